@@ -0,0 +1,138 @@
+package org.serasoft.pdi.benchmark;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.serasoft.pdi.parser.model.MissingReference;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessItemTypeEnum;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.model.ProcessTypeEnum;
+import org.serasoft.pdi.server.AnalysisState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class Name   : AnalysisStateBenchmark.java
+ * Package Name : org.serasoft.pdi.benchmark
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Cost of refreshing the state the query server answers from
+ * after a file of a large repository is saved in watch mode: building it again
+ * from every process versus patching it with the changed one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AnalysisStateBenchmark {
+
+    private static final String[] CONNECTIONS = {"DWH_PROD", "STAGING", "ODS"};
+
+    @Param({"20000"})
+    public int processes;
+
+    private List<ProcessMetadata> results;
+    private AnalysisState state;
+    private ProcessMetadata changed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+
+        results = new ArrayList<>(processes);
+        for (int i = 0; i < processes; i++) {
+            results.add(process(i));
+        }
+        // Each job runs the next two processes of its group of ten, the last ones of a group run missing files
+        for (int i = 0; i < processes; i++) {
+            for (int link = 1; link <= 2; link++) {
+                ProcessItem item = results.get(i).getItems().get("run_" + link);
+                if ((i + link) / 10 == i / 10)
+                    item.setLinkedProcess(results.get(i + link));
+                else
+                    addMissingRef(results.get(i), item);
+            }
+        }
+
+        state = AnalysisState.build(results);
+        // A process saved again, at the end of its group so that it links nothing
+        changed = process(processes / 2 + 9);
+    }
+
+    @Benchmark
+    public AnalysisState build() {
+        return AnalysisState.build(results);
+    }
+
+    @Benchmark
+    public AnalysisState update() {
+        return state.update(Collections.singletonList(changed), Collections.emptyList());
+    }
+
+    private static ProcessMetadata process(int i) {
+
+        ProcessMetadata m = new ProcessMetadata();
+        m.setTypeEnum(ProcessTypeEnum.JOB);
+        m.setName("process_" + i);
+        m.setProcFilename("/repo/dir_" + (i / 100) + "/process_" + i + ".kjb");
+
+        Map<String, ProcessItem> items = new LinkedHashMap<>();
+        for (int link = 1; link <= 2; link++) {
+            ProcessItem item = new ProcessItem(ProcessItemTypeEnum.TASK, "JOB", "run_" + link);
+            item.setLinkedProcFilename("/repo/dir_" + ((i + link) / 100) + "/process_" + (i + link) + ".kjb");
+            items.put(item.getName(), item);
+        }
+        for (int step = 0; step < 6; step++) {
+            ProcessItem item = new ProcessItem(ProcessItemTypeEnum.STEP, "TableInput", "step_" + step);
+            item.setConnectionName(CONNECTIONS[(i + step) % CONNECTIONS.length]);
+            items.put(item.getName(), item);
+        }
+        m.setItems(items);
+
+        return m;
+    }
+
+    private static void addMissingRef(ProcessMetadata m, ProcessItem item) {
+
+        MissingReference ref = new MissingReference(item.getName(), m.getName(), m.getProcFilename());
+        ref.setType("JOB");
+        ref.setRefValue(item.getLinkedProcFilename());
+        if (m.getMissingRefs() == null)
+            m.setMissingRefs(new ArrayList<>());
+        m.getMissingRefs().add(ref);
+    }
+}
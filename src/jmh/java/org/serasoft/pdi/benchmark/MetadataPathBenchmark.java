@@ -0,0 +1,147 @@
+package org.serasoft.pdi.benchmark;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.serasoft.pdi.parser.utils.MetadataPath;
+import org.serasoft.pdi.parser.utils.XMLInputFactoryHolder;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class Name   : MetadataPathBenchmark.java
+ * Package Name : org.serasoft.pdi.benchmark
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Streams a synthetic transformation (50MB by default) and, on every
+ * START_ELEMENT, tests the path against the eight paths TransformationParser
+ * looks for. The string based variant reproduces the former LinkedList
+ * MetadataPath, which joined the whole path for every comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MetadataPathBenchmark {
+
+    private static final String[] PATHS = {"/transformation/step", "/transformation/order",
+            "/transformation/info/name", "/transformation/info/description",
+            "/transformation/info/extended_description", "/transformation/info/unique_connections",
+            "/transformation/info/parameters", "/transformation/connection"};
+
+    @Param({"50"})
+    public int sizeMb;
+
+    private Path transFile;
+    private MetadataPath.Pattern[] patterns;
+
+    @Setup
+    public void setup() throws IOException {
+
+        transFile = Files.createTempFile("metadata-path-benchmark", ".ktr");
+        SyntheticProcesses.writeTransformation(transFile, sizeMb * 1024L * 1024L);
+
+        patterns = new MetadataPath.Pattern[PATHS.length];
+        for (int i = 0; i < PATHS.length; i++) {
+            patterns[i] = MetadataPath.compile(PATHS[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(transFile);
+    }
+
+    @Benchmark
+    public int joinedStringPath() throws IOException, XMLStreamException {
+
+        int matches = 0;
+        LinkedList<String> queue = new LinkedList<>();
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(transFile), 1 << 16)) {
+            XMLStreamReader xmlStreamReader = XMLInputFactoryHolder.createXMLStreamReader(in);
+            while (xmlStreamReader.hasNext()) {
+                int eventType = xmlStreamReader.next();
+                if (eventType == XMLStreamReader.START_ELEMENT) {
+                    queue.addLast(xmlStreamReader.getLocalName());
+                    for (String path : PATHS) {
+                        if (("/" + String.join("/", queue)).equals(path)) {
+                            matches++;
+                            break;
+                        }
+                    }
+                } else if (eventType == XMLStreamReader.END_ELEMENT) {
+                    queue.removeLast();
+                }
+            }
+            xmlStreamReader.close();
+        }
+
+        return matches;
+    }
+
+    @Benchmark
+    public int compiledPatterns() throws IOException, XMLStreamException {
+
+        int matches = 0;
+        MetadataPath metadataPath = new MetadataPath();
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(transFile), 1 << 16)) {
+            XMLStreamReader xmlStreamReader = XMLInputFactoryHolder.createXMLStreamReader(in);
+            while (xmlStreamReader.hasNext()) {
+                int eventType = xmlStreamReader.next();
+                if (eventType == XMLStreamReader.START_ELEMENT) {
+                    metadataPath.push(xmlStreamReader.getLocalName());
+                    for (MetadataPath.Pattern pattern : patterns) {
+                        if (metadataPath.matches(pattern)) {
+                            matches++;
+                            break;
+                        }
+                    }
+                } else if (eventType == XMLStreamReader.END_ELEMENT) {
+                    metadataPath.pop();
+                }
+            }
+            xmlStreamReader.close();
+        }
+
+        return matches;
+    }
+}
@@ -0,0 +1,105 @@
+package org.serasoft.pdi.benchmark;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.serasoft.pdi.parser.utils.ProcessFileInput;
+import org.serasoft.pdi.parser.utils.XMLInputFactoryHolder;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class Name   : ProcessFileInputBenchmark.java
+ * Package Name : org.serasoft.pdi.benchmark
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Time to stream every event of a generated transformation read
+ * through a plain FileInputStream, as the parsers used to, versus through
+ * ProcessFileInput. The file is written once per trial and stays in the page
+ * cache, so the figures are for warm files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProcessFileInputBenchmark {
+
+    @Param({"262144", "8388608", "50331648"})
+    public long fileSize;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("pdi-input-", ".ktr");
+        SyntheticProcesses.writeTransformation(file, fileSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int fileInputStream() throws IOException, XMLStreamException {
+        try (InputStream in = new FileInputStream(file.toFile())) {
+            return drain(XMLInputFactoryHolder.createXMLStreamReader(in));
+        }
+    }
+
+    @Benchmark
+    public int processFileInput() throws IOException, XMLStreamException {
+        try (ProcessFileInput in = ProcessFileInput.open(file.toFile())) {
+            return drain(XMLInputFactoryHolder.createXMLStreamReader(in));
+        }
+    }
+
+    private static int drain(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+
+        int events = 0;
+        while (xmlStreamReader.hasNext()) {
+            xmlStreamReader.next();
+            events++;
+        }
+        xmlStreamReader.close();
+
+        return events;
+    }
+}
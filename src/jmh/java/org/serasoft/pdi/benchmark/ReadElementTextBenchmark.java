@@ -0,0 +1,160 @@
+package org.serasoft.pdi.benchmark;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.serasoft.pdi.parser.BasePDIProcessParser;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.utils.MetadataPath;
+import org.serasoft.pdi.parser.utils.XMLInputFactoryHolder;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class Name   : ReadElementTextBenchmark.java
+ * Package Name : org.serasoft.pdi.benchmark
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Reads the text of every leaf element the parsers care about
+ * in a sample file, with the parsers' readElementText and with the previous
+ * StringBuilder and getText() version. Run it with -prof gc to compare the
+ * allocation rate per operation (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReadElementTextBenchmark {
+
+    private static final Set<String> TEXT_ELEMENTS = new HashSet<>(Arrays.asList("name", "type", "description",
+            "from", "to", "enabled", "server", "database", "port", "username", "code", "length", "precision",
+            "format", "currency", "decimal", "group", "nullif", "trim_type", "repeat", "xloc", "yloc", "draw"));
+
+    @Param({"samples/sample_processor.ktr"})
+    public String sampleFile;
+
+    private byte[] content;
+
+    @Setup
+    public void setup() throws IOException {
+        content = Files.readAllBytes(Paths.get(sampleFile));
+    }
+
+    @Benchmark
+    public int reusableBuffer() throws XMLStreamException {
+        return readAllText(new TextReader(), false);
+    }
+
+    @Benchmark
+    public int stringBuilder() throws XMLStreamException {
+        return readAllText(new TextReader(), true);
+    }
+
+    private int readAllText(TextReader textReader, boolean withStringBuilder) throws XMLStreamException {
+
+        XMLStreamReader xmlStreamReader = XMLInputFactoryHolder.createXMLStreamReader(new ByteArrayInputStream(content));
+        MetadataPath metadataPath = new MetadataPath();
+        int chars = 0;
+
+        while (xmlStreamReader.hasNext()) {
+            switch (xmlStreamReader.next()) {
+                case XMLStreamReader.START_ELEMENT:
+                    metadataPath.push(xmlStreamReader.getLocalName());
+                    if (TEXT_ELEMENTS.contains(xmlStreamReader.getLocalName())) {
+                        String text = withStringBuilder
+                                ? textReader.readWithStringBuilder(xmlStreamReader, metadataPath)
+                                : textReader.read(xmlStreamReader, metadataPath);
+                        chars += text.length();
+                    }
+                    break;
+                case XMLStreamReader.END_ELEMENT:
+                    metadataPath.pop();
+                    break;
+            }
+        }
+        xmlStreamReader.close();
+
+        return chars;
+    }
+
+    /**
+     * Exposes the parsers' readElementText, next to the version it replaced.
+     */
+    private static class TextReader extends BasePDIProcessParser {
+
+        TextReader() {
+            super(new File("benchmark"), 0, false);
+        }
+
+        String read(XMLStreamReader xmlStreamReader, MetadataPath metadataPath) {
+            return readElementText(xmlStreamReader, metadataPath);
+        }
+
+        String readWithStringBuilder(XMLStreamReader xmlStreamReader, MetadataPath metadataPath) {
+
+            StringBuilder content = new StringBuilder();
+            try {
+                while (xmlStreamReader.hasNext()) {
+                    int eventType = xmlStreamReader.next();
+                    if (eventType == XMLStreamReader.CHARACTERS || eventType == XMLStreamReader.CDATA) {
+                        content.append(xmlStreamReader.getText());
+                    } else if (eventType == XMLStreamReader.END_ELEMENT) {
+                        metadataPath.pop();
+                        break;
+                    }
+                }
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException(e);
+            }
+            return content.toString();
+        }
+
+        @Override
+        public ProcessMetadata parse() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ProcessMetadata parse(String parentPDIProcName, File parentPDIProcFile, String callerStepName) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.serasoft.pdi.benchmark;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.serasoft.pdi.parser.TransformationParser;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.report.ProcessMetadataJson;
+import org.serasoft.pdi.snapshot.SnapshotReader;
+import org.serasoft.pdi.snapshot.SnapshotWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class Name   : SnapshotBenchmark.java
+ * Package Name : org.serasoft.pdi.benchmark
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Time to get the metadata of a generated repository back by
+ * parsing its files again versus reading a snapshot of it. Setup prints the
+ * snapshot size next to the size of the same results as NDJSON.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SnapshotBenchmark {
+
+    private static final int FILES = 200;
+    private static final long FILE_SIZE = 64 * 1024;
+
+    private Path repoDir;
+    private List<Path> files;
+    private byte[] snapshot;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        repoDir = Files.createTempDirectory("pdi-snapshot-");
+        files = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            Path file = repoDir.resolve("trans_" + i + ".ktr");
+            SyntheticProcesses.writeTransformation(file, FILE_SIZE, "trans_" + i);
+            files.add(file);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long jsonBytes = 0;
+        try (SnapshotWriter writer = new SnapshotWriter(bytes)) {
+            for (ProcessMetadata m : parseFiles()) {
+                writer.write(m);
+                jsonBytes += ProcessMetadataJson.toJson(m).getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        }
+        snapshot = bytes.toByteArray();
+
+        System.out.println("Snapshot: " + snapshot.length + " bytes, NDJSON: " + jsonBytes + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(repoDir);
+    }
+
+    @Benchmark
+    public List<ProcessMetadata> parseFiles() {
+
+        List<ProcessMetadata> results = new ArrayList<>(files.size());
+        for (Path file : files) {
+            results.add(new TransformationParser(file.toFile(), 0, false).parse());
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<ProcessMetadata> readSnapshot() throws IOException {
+        return new SnapshotReader(new ByteArrayInputStream(snapshot)).read();
+    }
+}
@@ -0,0 +1,126 @@
+package org.serasoft.pdi.benchmark;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.serasoft.pdi.parser.ParserContext;
+import org.serasoft.pdi.parser.StringPool;
+import org.serasoft.pdi.parser.TransformationParser;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class Name   : StringPoolFootprintBenchmark.java
+ * Package Name : org.serasoft.pdi.benchmark
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Scans a generated repository with and without the string pool
+ * and keeps the results, as the analyzer does while building its report. After
+ * each iteration the heap retained by the results is measured, by comparing
+ * the used heap after a full GC with and without them, and printed.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class StringPoolFootprintBenchmark {
+
+    private static final int FILES = 400;
+    private static final long FILE_SIZE = 32 * 1024;
+
+    @Param({"0", "100000"})
+    public int poolSize;
+
+    private Path repoDir;
+    private List<Path> files;
+    private List<ProcessMetadata> results;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        repoDir = Files.createTempDirectory("pdi-pool-");
+        files = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            Path file = repoDir.resolve("trans_" + i + ".ktr");
+            SyntheticProcesses.writeTransformation(file, FILE_SIZE, "trans_" + i);
+            files.add(file);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(repoDir);
+    }
+
+    @Benchmark
+    public List<ProcessMetadata> scanRepository() {
+
+        ParserContext context = new ParserContext(0);
+        context.setStringPool(new StringPool(poolSize));
+
+        results = new ArrayList<>(files.size());
+        for (Path file : files) {
+            results.add(new TransformationParser(file.toFile(), 0, false, context).parse());
+        }
+        return results;
+    }
+
+    @TearDown(Level.Iteration)
+    public void measureRetainedHeap() {
+
+        long withResults = usedHeapAfterGc();
+        results = null;
+        long withoutResults = usedHeapAfterGc();
+
+        System.out.println("Retained by " + FILES + " results (pool size " + poolSize + "): "
+                + (withResults - withoutResults) / 1024 + " KB");
+    }
+
+    private static long usedHeapAfterGc() {
+
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
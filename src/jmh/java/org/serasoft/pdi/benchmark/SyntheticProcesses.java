@@ -0,0 +1,108 @@
+package org.serasoft.pdi.benchmark;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Class Name   : SyntheticProcesses.java
+ * Package Name : org.serasoft.pdi.benchmark
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Writes generated transformations shaped like the ones produced
+ * by Spoon: an info header, a few connections, the hops and then many steps
+ * with long field lists and GUI coordinates.
+ */
+public final class SyntheticProcesses {
+
+    private static final String[] STEP_TYPES = {"TableInput", "SelectValues", "FilterRows", "TableOutput",
+            "Calculator", "StreamLookup", "SortRows", "Dummy"};
+    private static final String[] CONNECTIONS = {"DWH_PROD", "STAGING", "ODS"};
+
+    private SyntheticProcesses() {
+    }
+
+    /**
+     * Writes a transformation of at least targetBytes bytes to file.
+     */
+    public static void writeTransformation(Path file, long targetBytes) throws IOException {
+        writeTransformation(file, targetBytes, "synthetic");
+    }
+
+    public static void writeTransformation(Path file, long targetBytes, String name) throws IOException {
+
+        try (Writer w = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<transformation>\n");
+            w.write("  <info>\n    <name>" + name + "</name>\n    <description>Generated</description>\n");
+            w.write("    <extended_description/>\n    <trans_version/>\n    <trans_type>Normal</trans_type>\n");
+            w.write("    <parameters>\n      <parameter><name>BASE_DIR</name><default_value>/data</default_value>"
+                    + "<description/></parameter>\n    </parameters>\n");
+            w.write("    <log>\n      <trans-log-table><connection/><schema/><table/></trans-log-table>\n    </log>\n");
+            w.write("    <unique_connections>N</unique_connections>\n  </info>\n");
+            w.write("  <notepads>\n    <notepad><note>Generated for benchmarks</note><xloc>10</xloc><yloc>10</yloc>"
+                    + "</notepad>\n  </notepads>\n");
+
+            for (String connection : CONNECTIONS) {
+                w.write("  <connection>\n    <name>" + connection + "</name>\n    <server>db.example.com</server>\n");
+                w.write("    <type>POSTGRESQL</type>\n    <access>Native</access>\n    <database>" + connection.toLowerCase()
+                        + "</database>\n    <port>5432</port>\n    <username>etl</username>\n    <password>Encrypted x</password>\n");
+                w.write("    <attributes>\n      <attribute><code>FORCE_IDENTIFIERS_TO_LOWERCASE</code><attribute>N</attribute>"
+                        + "</attribute>\n      <attribute><code>PORT_NUMBER</code><attribute>5432</attribute></attribute>\n"
+                        + "    </attributes>\n  </connection>\n");
+            }
+
+            // Each step takes about 2.5KB, hops are written first as Spoon does
+            int steps = (int) Math.max(2, targetBytes / 2600);
+            w.write("  <order>\n");
+            for (int i = 1; i < steps; i++) {
+                w.write("    <hop> <from>step_" + (i - 1) + "</from><to>step_" + i + "</to><enabled>Y</enabled> </hop>\n");
+            }
+            w.write("  </order>\n");
+
+            for (int i = 0; i < steps; i++) {
+                String type = STEP_TYPES[i % STEP_TYPES.length];
+                w.write("  <step>\n    <name>step_" + i + "</name>\n    <type>" + type + "</type>\n");
+                w.write("    <description/>\n    <distribute>Y</distribute>\n    <custom_distribution/>\n");
+                w.write("    <copies>1</copies>\n    <partitioning>\n      <method>none</method>\n"
+                        + "      <schema_name/>\n    </partitioning>\n");
+                if (type.startsWith("Table"))
+                    w.write("    <connection>" + CONNECTIONS[i % CONNECTIONS.length] + "</connection>\n");
+                w.write("    <fields>\n");
+                for (int f = 0; f < 12; f++) {
+                    w.write("      <field>\n        <name>field_" + f + "</name>\n        <type>String</type>\n"
+                            + "        <length>-1</length>\n        <precision>-1</precision>\n"
+                            + "        <trim_type>none</trim_type>\n      </field>\n");
+                }
+                w.write("    </fields>\n    <attributes/>\n    <cluster_schema/>\n");
+                w.write("    <remotesteps>\n      <input></input>\n      <output></output>\n    </remotesteps>\n");
+                w.write("    <GUI>\n      <xloc>" + (i * 32 % 2000) + "</xloc>\n      <yloc>" + (i / 60 * 64)
+                        + "</yloc>\n      <draw>Y</draw>\n    </GUI>\n  </step>\n");
+            }
+
+            w.write("  <step_error_handling>\n  </step_error_handling>\n");
+            w.write("  <slave-step-copy-partition-distribution>\n  </slave-step-copy-partition-distribution>\n");
+            w.write("  <slave_transformation>N</slave_transformation>\n</transformation>\n");
+        }
+    }
+}
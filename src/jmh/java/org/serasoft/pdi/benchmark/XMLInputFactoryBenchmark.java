@@ -0,0 +1,92 @@
+package org.serasoft.pdi.benchmark;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.serasoft.pdi.parser.utils.XMLInputFactoryHolder;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class Name   : XMLInputFactoryBenchmark.java
+ * Package Name : org.serasoft.pdi.benchmark
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Per-file cost of reading the sample processes with a factory
+ * created for every file versus the shared XMLInputFactoryHolder factory.
+ * File contents are loaded in memory up front so only the StAX setup and
+ * the event loop are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class XMLInputFactoryBenchmark {
+
+    @Param({"samples/sample.kjb", "samples/sample_list_files.ktr", "samples/sample_processor.ktr"})
+    public String sampleFile;
+
+    private byte[] content;
+
+    @Setup
+    public void setup() throws IOException {
+        content = Files.readAllBytes(Paths.get(sampleFile));
+    }
+
+    @Benchmark
+    public int newFactoryPerFile() throws XMLStreamException {
+        return drain(XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(content)));
+    }
+
+    @Benchmark
+    public int sharedFactory() throws XMLStreamException {
+        return drain(XMLInputFactoryHolder.createXMLStreamReader(new ByteArrayInputStream(content)));
+    }
+
+    private static int drain(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+
+        int events = 0;
+        while (xmlStreamReader.hasNext()) {
+            xmlStreamReader.next();
+            events++;
+        }
+        xmlStreamReader.close();
+
+        return events;
+    }
+}
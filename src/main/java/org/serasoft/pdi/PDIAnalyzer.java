@@ -17,9 +17,30 @@ package org.serasoft.pdi;
  *
  */
 
+import org.serasoft.pdi.analyzer.AnalysisIndex;
+import org.serasoft.pdi.analyzer.ConnectionConflictCollector;
+import org.serasoft.pdi.analyzer.ConnectionUsageIndex;
+import org.serasoft.pdi.analyzer.DependencyGraph;
+import org.serasoft.pdi.analyzer.MissingReferenceCollector;
+import org.serasoft.pdi.analyzer.OrderedResultCollector;
+import org.serasoft.pdi.analyzer.ProcessFilesWalker;
+import org.serasoft.pdi.analyzer.WatchedProcesses;
+import org.serasoft.pdi.parser.model.MissingReference;
 import org.serasoft.pdi.parser.model.ProcessMetadata;
 import org.serasoft.pdi.parser.JobParser;
+import org.serasoft.pdi.parser.KettleEnvironment;
+import org.serasoft.pdi.parser.ParseCache;
+import org.serasoft.pdi.parser.ParseMetrics;
+import org.serasoft.pdi.parser.ParsePlan;
+import org.serasoft.pdi.parser.ParserContext;
 import org.serasoft.pdi.parser.TransformationParser;
+import org.serasoft.pdi.parser.VariableResolver;
+import org.serasoft.pdi.parser.utils.ConcurrentHistogram;
+import org.serasoft.pdi.parser.utils.VariableScope;
+import org.serasoft.pdi.report.NdjsonReportWriter;
+import org.serasoft.pdi.server.AnalysisServer;
+import org.serasoft.pdi.server.AnalysisState;
+import org.serasoft.pdi.snapshot.SnapshotWriter;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -28,8 +49,32 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 
 /**
@@ -56,17 +101,154 @@ public class PDIAnalyzer {
     private static final String FOLLOW_DIR = "directory";
     private static final String FOLLOW_PROCLINKS = "links";
 
+    private static final int DEFAULT_THREADS = 1;
+    private static final int PENDING_FILES_PER_THREAD = 4;
+    // Editors save through temporary files and renames: events closer than this are handled together
+    private static final long WATCH_SETTLE_MILLIS = 50;
+
+    private int threads;
+    private int parseCacheSize = ParseCache.DEFAULT_MAX_SIZE;
+    private int maxDepth = ParserContext.DEFAULT_MAX_DEPTH;
+    private String outDir;
+    private boolean incremental;
+    private ParsePlan parsePlan = ParsePlan.ALL;
+    // Fed by the worker threads, as soon as each result is ready
+    private final List<Consumer<ProcessMetadata>> workerConsumers = new ArrayList<>();
+    private KettleEnvironment kettleEnvironment = KettleEnvironment.EMPTY;
+    // Null unless parse metrics are collected
+    private ParseMetrics parseMetrics;
+    // Context of the last analyzeFiles run, reused by watch so that its caches stay warm
+    private ParserContext context;
+
+    public PDIAnalyzer() {
+        this(DEFAULT_THREADS);
+    }
+
+    public PDIAnalyzer(int threads) {
+        this.threads = threads > 0 ? threads : DEFAULT_THREADS;
+    }
+
+    public String getOutDir() {
+        return outDir;
+    }
+
+    public void setOutDir(String outDir) {
+        this.outDir = outDir;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * When set, the metadata collected for each file is kept in an index under
+     * outDir and only files that changed since the previous run are parsed again.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public ParsePlan getParsePlan() {
+        return parsePlan;
+    }
+
+    /**
+     * Sets the sections collected from each file. Following links needs the
+     * items, so they must be part of the plan for links to be followed.
+     */
+    public void setParsePlan(ParsePlan parsePlan) {
+        this.parsePlan = parsePlan;
+    }
+
+    public KettleEnvironment getKettleEnvironment() {
+        return kettleEnvironment;
+    }
+
+    /**
+     * Sets the kettle.properties variables and shared.xml connections that every
+     * analyzed process sees.
+     */
+    public void setKettleEnvironment(KettleEnvironment kettleEnvironment) {
+        this.kettleEnvironment = kettleEnvironment;
+    }
+
+    /**
+     * Adds a consumer of the metadata of every analyzed file, reused from the
+     * index or not. Unlike the results consumer of analyzeFiles it is called by
+     * the worker threads, concurrently and in no particular order, so it must be
+     * thread safe.
+     */
+    public void addWorkerConsumer(Consumer<ProcessMetadata> workerConsumer) {
+        workerConsumers.add(workerConsumer);
+    }
+
+    public ParseMetrics getParseMetrics() {
+        return parseMetrics;
+    }
+
+    /**
+     * Collects in parseMetrics the figures of every file parsed from now on.
+     */
+    public void setParseMetrics(ParseMetrics parseMetrics) {
+        this.parseMetrics = parseMetrics;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public int getParseCacheSize() {
+        return parseCacheSize;
+    }
+
+    /**
+     * Sets how many parsed processes are kept per run to be shared between the
+     * items that link them. Zero disables the cache.
+     */
+    public void setParseCacheSize(int parseCacheSize) {
+        this.parseCacheSize = parseCacheSize;
+    }
+
     public static void main(String[] args) throws Exception {
 
         Options opts = new Options();
 
-        opts.addOption("report", false, "Generate a report documenting the procedures under analysis");
+        opts.addOption("report", false, "Generate a report documenting the procedures under analysis, written to outDir "
+                + "as one JSON record per line");
 
         opts.addOption("check", true, "Define a list of things to check: parameters, connection, trans_flag");
         opts.addOption("follow", true, "Values: directory, links, none");
         opts.addOption("outDir", true, "Path to output directory where we will write eventual output files");
         opts.addOption("srcDir", true, "Path to base directory containing the PDI processes source");
         opts.addOption("filename", true, "Pathname to file to be analyzed");
+        opts.addOption("threads", true, "Number of worker threads used to analyze the files of srcDir (default: 1)");
+        opts.addOption("cacheSize", true, "Max number of parsed processes cached while following links (default: "
+                + ParseCache.DEFAULT_MAX_SIZE + ", 0 to disable)");
+        opts.addOption("maxDepth", true, "Max number of levels of links followed from a process (default: "
+                + ParserContext.DEFAULT_MAX_DEPTH + ")");
+        opts.addOption("impact", true, "Pathname of a process: list every process that calls it, directly or not");
+        opts.addOption("snapshot", true, "Pathname of a binary snapshot of the analysis results to write");
+        opts.addOption("inventory", false, "List name and parameters of each process, reading only the file headers");
+        opts.addOption("connectionUsage", false, "Write to outDir the steps and job entries using each connection, "
+                + "as one JSON record per line");
+        opts.addOption("connectionConflicts", false, "Write to outDir the connections defined differently "
+                + "in different processes, as one JSON record per connection name");
+        opts.addOption("kettleHome", true, "Path to the PDI home whose .kettle directory holds kettle.properties "
+                + "and shared.xml, used to resolve variables and shared connections");
+        opts.addOption("sharedXml", true, "Pathname of the shared.xml file defining shared connections "
+                + "(default: the one in kettleHome)");
+        opts.addOption("serve", true, "Port on which, once the analysis of srcDir is done, a local HTTP server "
+                + "keeps answering queries on it");
+        opts.addOption("watch", false, "Once the analysis of srcDir is done, keep analyzing the files changed in it "
+                + "and report the missing references that appear or go away");
+        opts.addOption("metrics", false, "Measure the parse of each file and log, at the end of the analysis, "
+                + "percentiles of the parse times and the slowest files");
+        opts.addOption("incremental", false, "Keep an index of the analyzed files in outDir and parse again only "
+                + "the files changed since the previous run");
 
         CommandLineParser parser = new DefaultParser();
         CommandLine cmdLine = parser.parse(opts, args);
@@ -75,9 +257,22 @@ public class PDIAnalyzer {
             // Throw error
         }
 
+        if (cmdLine.hasOption("serve")) {
+            if (cmdLine.hasOption("filename")) {
+                l.error("The server answers queries on the analysis of srcDir, -serve cannot be used with -filename");
+                return;
+            }
+            // Answers are small: with Nagle's algorithm on, the body waits for the
+            // client's delayed ACK of the headers, about 40 ms per request. Set
+            // before the JDK server classes read it, unless given on the command line
+            if (System.getProperty("sun.net.httpserver.nodelay") == null)
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
         String outDir = cmdLine.hasOption("outDir") ? cmdLine.getOptionValue("outDir") : null;
         String follow = cmdLine.hasOption("follow") ? cmdLine.getOptionValue("follow") : FOLLOW_DIR;
         String checks = cmdLine.hasOption("check") ? cmdLine.getOptionValue("check") : null;
+        int threads = cmdLine.hasOption("threads") ? Integer.parseInt(cmdLine.getOptionValue("threads")) : DEFAULT_THREADS;
 
         // Follow links between procedures only if required and recurseSubdir = false (DEFAULT)
         ArrayList<String> checksList = null;
@@ -87,20 +282,177 @@ public class PDIAnalyzer {
         boolean recurseDir = follow.equals(FOLLOW_DIR);
         boolean followLinks = follow.equals(FOLLOW_PROCLINKS);
 
-        PDIAnalyzer analyzer = new PDIAnalyzer();
+        // Links, and the dependency graph built from them, are carried by the items
+        ParsePlan parsePlan = cmdLine.hasOption("inventory") ? ParsePlan.HEADER : ParsePlan.fromChecks(checksList);
+        if (followLinks || cmdLine.hasOption("impact") || cmdLine.hasOption("watch"))
+            parsePlan = parsePlan.with(ParsePlan.Section.ITEMS);
+        if (cmdLine.hasOption("connectionConflicts"))
+            parsePlan = parsePlan.with(ParsePlan.Section.CONNECTIONS);
+        // The server answers lineage, parameters and connection queries whatever the checks
+        if (cmdLine.hasOption("serve"))
+            parsePlan = parsePlan.with(ParsePlan.Section.ITEMS)
+                    .with(ParsePlan.Section.PARAMETERS)
+                    .with(ParsePlan.Section.CONNECTIONS);
+
+        PDIAnalyzer analyzer = new PDIAnalyzer(threads);
+        analyzer.setOutDir(outDir);
+        analyzer.setIncremental(cmdLine.hasOption("incremental"));
+        analyzer.setParsePlan(parsePlan);
+        if (cmdLine.hasOption("cacheSize"))
+            analyzer.setParseCacheSize(Integer.parseInt(cmdLine.getOptionValue("cacheSize")));
+        if (cmdLine.hasOption("maxDepth"))
+            analyzer.setMaxDepth(Integer.parseInt(cmdLine.getOptionValue("maxDepth")));
+
+        if (cmdLine.hasOption("metrics"))
+            analyzer.setParseMetrics(new ParseMetrics());
+
+        if (cmdLine.hasOption("kettleHome") || cmdLine.hasOption("sharedXml")) {
+            KettleEnvironment kettleEnvironment = KettleEnvironment.load(
+                    cmdLine.hasOption("kettleHome") ? new File(cmdLine.getOptionValue("kettleHome")) : null,
+                    cmdLine.hasOption("sharedXml") ? new File(cmdLine.getOptionValue("sharedXml")) : null);
+            l.info("Kettle environment: " + kettleEnvironment.getVariables().size() + " variables, "
+                    + kettleEnvironment.getSharedConnections().size() + " shared connections");
+            analyzer.setKettleEnvironment(kettleEnvironment);
+        }
+
+        MissingReferenceCollector missingRefCollector = new MissingReferenceCollector();
+        analyzer.addWorkerConsumer(missingRefCollector);
+
+        ConnectionUsageIndex connectionUsage = null;
+        if (cmdLine.hasOption("connectionUsage")) {
+            if (outDir == null) {
+                l.error("The connection usage export requires an output directory, it will not be written");
+            } else {
+                connectionUsage = new ConnectionUsageIndex();
+                analyzer.addWorkerConsumer(connectionUsage);
+            }
+        }
+
+        ConnectionConflictCollector connectionConflicts = null;
+        if (cmdLine.hasOption("connectionConflicts")) {
+            if (outDir == null) {
+                l.error("The connection conflicts export requires an output directory, it will not be written");
+            } else {
+                connectionConflicts = new ConnectionConflictCollector();
+                analyzer.addWorkerConsumer(connectionConflicts);
+            }
+        }
+
+        NdjsonReportWriter report = null;
+        if (cmdLine.hasOption("report")) {
+            if (outDir == null) {
+                l.error("A report requires an output directory, no report will be written");
+            } else {
+                report = new NdjsonReportWriter(new File(outDir));
+                l.info("Writing report to " + report.getReportFile());
+            }
+        }
+
+        AnalysisServer server = null;
+        WatchedProcesses watched = null;
         if (cmdLine.hasOption("filename")) {
             // Read and process a single file
-            analyzer.analyzeFile(cmdLine.getOptionValue("filename"), recurseDir, followLinks);
+            ProcessMetadata m = analyzer.analyzeFile(cmdLine.getOptionValue("filename"), recurseDir, followLinks);
+            if (report != null && m != null)
+                report.accept(m);
         } else if (cmdLine.hasOption("srcDir")) {
             // Read and process a directory of files
-            analyzer.analyzeFiles(cmdLine.getOptionValue("srcDir"), recurseDir, followLinks);
+            DependencyGraph.Builder graphBuilder = new DependencyGraph.Builder();
+            Consumer<ProcessMetadata> resultsConsumer = graphBuilder::addProcess;
+            if (cmdLine.hasOption("inventory"))
+                resultsConsumer = resultsConsumer.andThen(PDIAnalyzer::logInventoryEntry);
+            if (report != null) {
+                Path baseDir = new File(cmdLine.getOptionValue("srcDir")).getCanonicalFile().toPath();
+                ProcessFilesWalker walker = new ProcessFilesWalker(recurseDir);
+                report.setAnalyzed(procFilename -> walker.walks(baseDir, Paths.get(procFilename)));
+                resultsConsumer = resultsConsumer.andThen(report);
+            }
+
+            SnapshotWriter snapshot = null;
+            // Kept in memory for the queries answered once the analysis is done
+            List<ProcessMetadata> results = null;
+            if (cmdLine.hasOption("serve")) {
+                results = new ArrayList<>();
+                resultsConsumer = resultsConsumer.andThen(results::add);
+            }
+
+            if (cmdLine.hasOption("watch")) {
+                watched = new WatchedProcesses();
+                WatchedProcesses watchedProcesses = watched;
+                resultsConsumer = resultsConsumer.andThen(watchedProcesses::put);
+            }
+
+            if (cmdLine.hasOption("snapshot")) {
+                snapshot = new SnapshotWriter(Files.newOutputStream(Paths.get(cmdLine.getOptionValue("snapshot"))));
+                resultsConsumer = resultsConsumer.andThen(snapshot);
+            }
+
+            analyzer.analyzeFiles(cmdLine.getOptionValue("srcDir"), recurseDir, followLinks, resultsConsumer);
+
+            if (snapshot != null) {
+                try {
+                    snapshot.close();
+                } catch (IOException e) {
+                    l.error("Unable to write snapshot " + cmdLine.getOptionValue("snapshot") + ": " + e.getMessage());
+                }
+            }
+
+            if (parsePlan.includes(ParsePlan.Section.ITEMS)) {
+                DependencyGraph graph = graphBuilder.build();
+                l.info("Dependency graph: " + graph.nodeCount() + " processes, " + graph.edgeCount() + " links");
+                if (cmdLine.hasOption("impact"))
+                    logImpact(graph, cmdLine.getOptionValue("impact"));
+            }
+
+            if (results != null)
+                server = new AnalysisServer(Integer.parseInt(cmdLine.getOptionValue("serve")), AnalysisState.build(results));
         } else {
             // TODO error management
         }
+
+        if (!missingRefCollector.isEmpty())
+            logMissingReferences(missingRefCollector);
+
+        if (connectionUsage != null)
+            exportConnectionUsage(connectionUsage, new File(outDir));
+
+        if (connectionConflicts != null)
+            exportConnectionConflicts(connectionConflicts, new File(outDir));
+
+        if (report != null)
+            report.close();
+
+        if (analyzer.getParseMetrics() != null)
+            logParseMetrics(analyzer.getParseMetrics());
+
+        AnalysisServer runningServer = server;
+        if (runningServer != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(runningServer::close));
+            runningServer.start();
+        }
+
+        if (watched != null) {
+            WatchedProcesses watchedProcesses = watched;
+            analyzer.watch(cmdLine.getOptionValue("srcDir"), recurseDir, followLinks, watchedProcesses, updates -> {
+                logUpdates(updates);
+                if (runningServer != null) {
+                    // Patched with the files analyzed again rather than built from the whole tree
+                    List<ProcessMetadata> changed = new ArrayList<>();
+                    List<String> removed = new ArrayList<>();
+                    for (WatchedProcesses.Update update : updates) {
+                        if (update.isRemoved())
+                            removed.add(update.getProcFilename());
+                        else
+                            changed.add(watchedProcesses.get(update.getProcFilename()));
+                    }
+                    runningServer.setState(runningServer.getState().update(changed, removed));
+                }
+            });
+        }
     }
 
 
-    public void analyzeFile(String filename, boolean recurse, boolean followLinks) {
+    public ProcessMetadata analyzeFile(String filename, boolean recurse, boolean followLinks) {
 
         File f = new File(filename);
 
@@ -112,11 +464,29 @@ public class PDIAnalyzer {
             // TODO Manage exit because cannot be read
             System.exit(-5);
 
-        startAnalysis(f, followLinks);
+        AnalysisIndex index = loadIndex(followLinks);
+        ProcessMetadata m = startAnalysis(f, followLinks, createParserContext(), index);
+        saveIndex(index, false);
+
+        return m;
+    }
+
+    public List<ProcessMetadata> analyzeFiles(String srcDir, boolean recurse, boolean followLinks) {
 
+        List<ProcessMetadata> results = new ArrayList<>();
+        analyzeFiles(srcDir, recurse, followLinks, results::add);
+        return results;
     }
 
-    public void analyzeFiles(String srcDir, boolean recurse, boolean followLinks) {
+    /**
+     * Walks srcDir and analyzes each PDI file as soon as the walker finds it. Results
+     * are handed to resultsConsumer one at a time and in walk order, whatever the
+     * number of worker threads.
+     */
+    public void analyzeFiles(String srcDir,
+                             boolean recurse,
+                             boolean followLinks,
+                             Consumer<ProcessMetadata> resultsConsumer) {
 
         File f = new File(srcDir);
 
@@ -124,11 +494,373 @@ public class PDIAnalyzer {
             // TODO Manage exit because is not a directory
             System.exit(-3);
 
-        ArrayList<File> completeFilesList = new ArrayList<>();
-        getFilesList(f, completeFilesList, recurse);
+        ParserContext context = createParserContext();
+        this.context = context;
+        ProcessFilesWalker walker = new ProcessFilesWalker(recurse);
+        walker.setDirectoryListings(context.getDirectoryListings());
+        AnalysisIndex index = loadIndex(followLinks);
+
+        if (threads == 1) {
+            try {
+                walker.walk(f.toPath(), file -> {
+                    ProcessMetadata m = startAnalysis(file, followLinks, context, index);
+                    if (m != null)
+                        resultsConsumer.accept(m);
+                });
+            } catch (IOException e) {
+                l.error("Unable to read directory " + srcDir + ": " + e.getMessage());
+            }
+        } else {
+            analyzeFilesInParallel(f, walker, followLinks, context, index, resultsConsumer);
+        }
+
+        saveIndex(index, true);
+
+        l.debug("Parse cache: " + context.getParseCache().getHits() + " hits, "
+                + context.getParseCache().getMisses() + " misses, "
+                + context.getDirectoryListings().getListed() + " directories listed to check links");
+    }
+
+    private void analyzeFilesInParallel(File srcDir,
+                                        ProcessFilesWalker walker,
+                                        boolean followLinks,
+                                        ParserContext context,
+                                        AnalysisIndex index,
+                                        Consumer<ProcessMetadata> resultsConsumer) {
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+        OrderedResultCollector collector = new OrderedResultCollector(threads * PENDING_FILES_PER_THREAD,
+                resultsConsumer);
+
+        try {
+            walker.walk(srcDir.toPath(), file -> {
+                long sequence;
+                try {
+                    // Blocks the walk while the workers are too far behind
+                    sequence = collector.reserve();
+                } catch (InterruptedException e) {
+                    throw new WalkInterruptedException();
+                }
+
+                workers.execute(() -> {
+                    ProcessMetadata m = null;
+                    try {
+                        m = startAnalysis(file, followLinks, context, index);
+                    } catch (RuntimeException e) {
+                        l.error("Analysis of file " + file + " failed: " + e);
+                    } finally {
+                        collector.complete(sequence, m);
+                    }
+                });
+            });
+
+            collector.awaitCompletion();
+        } catch (IOException e) {
+            l.error("Unable to read directory " + srcDir + ": " + e.getMessage());
+        } catch (InterruptedException | WalkInterruptedException e) {
+            l.error("Analysis interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+        }
+    }
 
-        if (!completeFilesList.isEmpty()) {
-            completeFilesList.forEach(file -> startAnalysis(file, followLinks));
+    /**
+     * Watches srcDir and analyzes again the process files created, changed or
+     * deleted, until the thread is interrupted. processes holds the results of
+     * the analysis already done and is patched file by file; updatesConsumer
+     * gets what changed after each burst of events. Besides the changed files,
+     * the processes linking to them are parsed again when their view of them is
+     * stale: all the callers up the chain when links are followed, the direct
+     * callers when a file appears or disappears otherwise.
+     */
+    public void watch(String srcDir,
+                      boolean recurse,
+                      boolean followLinks,
+                      WatchedProcesses processes,
+                      Consumer<List<WatchedProcesses.Update>> updatesConsumer) throws IOException {
+
+        Path baseDir = new File(srcDir).getCanonicalFile().toPath();
+        ParserContext context = this.context != null ? this.context : createParserContext();
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> watchedDirs = new HashMap<>();
+            registerDirectory(baseDir, recurse, watchService, watchedDirs, null);
+            l.info("Watching " + watchedDirs.size() + " directories under " + baseDir);
+
+            while (true) {
+                Set<Path> changed = new TreeSet<>();
+                boolean overflow = false;
+
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    Path dir = watchedDirs.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else if (dir != null) {
+                            Path p = dir.resolve((Path) event.context());
+                            if (Files.isDirectory(p)) {
+                                if (recurse && event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+                                    registerDirectory(p, true, watchService, watchedDirs, changed);
+                            } else if (ProcessFilesWalker.isProcessFile(p)) {
+                                changed.add(p);
+                            }
+                        }
+                    }
+
+                    if (!key.reset()) {
+                        // The directory is gone, and the processes it held with it
+                        watchedDirs.remove(key);
+                        if (dir != null)
+                            changed.addAll(knownProcessesUnder(dir, processes));
+                    }
+                    key = watchService.poll(WATCH_SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                if (overflow) {
+                    l.warn("Too many changes at once, looking at every file under " + baseDir);
+                    changed.addAll(knownProcessesUnder(baseDir, processes));
+                    new ProcessFilesWalker(recurse).walk(baseDir, f -> changed.add(f.toPath()));
+                }
+
+                List<WatchedProcesses.Update> updates = reanalyze(changed, followLinks, context, processes);
+                if (!updates.isEmpty())
+                    updatesConsumer.accept(updates);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<WatchedProcesses.Update> reanalyze(Set<Path> changed,
+                                                    boolean followLinks,
+                                                    ParserContext context,
+                                                    WatchedProcesses processes) throws IOException {
+
+        long start = System.currentTimeMillis();
+
+        // Changed files first, so that their callers pick up the new metadata from the parse cache
+        Set<String> affected = new LinkedHashSet<>();
+        Set<String> callers = new LinkedHashSet<>();
+        for (Path p : changed) {
+            File f = p.toFile().getCanonicalFile();
+            context.getDirectoryListings().invalidate(f.getParentFile());
+            affected.add(f.getPath());
+
+            if (followLinks)
+                callers.addAll(processes.transitiveCallersOf(f.getPath()));
+            else if (processes.contains(f.getPath()) != f.isFile())
+                callers.addAll(processes.callersOf(f.getPath()));
+        }
+        affected.addAll(callers);
+
+        for (String procFilename : affected) {
+            context.getParseCache().invalidate(procFilename);
+        }
+
+        List<WatchedProcesses.Update> updates = new ArrayList<>();
+        for (String procFilename : affected) {
+            File f = new File(procFilename);
+            if (f.isFile()) {
+                ProcessMetadata m = startAnalysis(f, followLinks, context);
+                if (m != null)
+                    updates.add(processes.put(m));
+            } else if (processes.contains(procFilename)) {
+                updates.add(processes.remove(procFilename));
+            }
+        }
+
+        l.info(changed.size() + " files changed, " + affected.size() + " processes analyzed again in "
+                + (System.currentTimeMillis() - start) + " ms");
+
+        return updates;
+    }
+
+    /**
+     * Registers dir, and its subdirectories when recurse is set, with the watch
+     * service. Process files found in them are added to found, when not null.
+     */
+    private static void registerDirectory(Path dir,
+                                          boolean recurse,
+                                          WatchService watchService,
+                                          Map<WatchKey, Path> watchedDirs,
+                                          Set<Path> found) throws IOException {
+
+        WatchKey key = dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        watchedDirs.put(key, dir);
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                if (Files.isHidden(entry))
+                    continue;
+
+                if (Files.isDirectory(entry)) {
+                    if (recurse)
+                        registerDirectory(entry, true, watchService, watchedDirs, found);
+                } else if (found != null && ProcessFilesWalker.isProcessFile(entry)) {
+                    // Created before the directory was registered
+                    found.add(entry);
+                }
+            }
+        }
+    }
+
+    private static List<Path> knownProcessesUnder(Path dir, WatchedProcesses processes) {
+
+        List<Path> known = new ArrayList<>();
+        for (ProcessMetadata m : processes.getProcesses()) {
+            Path p = Paths.get(m.getProcFilename());
+            if (p.startsWith(dir))
+                known.add(p);
+        }
+        return known;
+    }
+
+    private static void logInventoryEntry(ProcessMetadata m) {
+
+        l.info(m.getTypeEnum() + " " + m.getName() + " (" + m.getProcFilename() + ")"
+                + (m.getParams() != null ? " - parameters: " + String.join(", ", m.getParams().keySet()) : ""));
+    }
+
+    private static void logMissingReferences(MissingReferenceCollector missingRefCollector) {
+
+        Map<String, List<MissingReference>> summary = missingRefCollector.summary();
+        l.warn("Files referenced but not found: " + summary.size());
+        for (Map.Entry<String, List<MissingReference>> target : summary.entrySet()) {
+            l.warn("| " + target.getKey());
+            for (MissingReference caller : target.getValue()) {
+                l.warn("| | " + caller.getType() + " from " + caller.getReferencingProcFilename()
+                        + (caller.getReferencingStepName() != null ? " (" + caller.getReferencingStepName() + ")" : ""));
+            }
+        }
+    }
+
+    private static void logParseMetrics(ParseMetrics metrics) {
+
+        l.info("Parse metrics: " + metrics.getFileCount() + " files parsed, "
+                + metrics.getBytes().getSum() + " bytes, "
+                + metrics.getEvents().getSum() + " StAX events");
+        l.info("| wall time   " + formatTimes(metrics.getWallTimes()));
+        l.info("| own time    " + formatTimes(metrics.getOwnTimes()));
+        for (ParseMetrics.Section section : ParseMetrics.Section.values()) {
+            ConcurrentHistogram times = metrics.getSectionTimes(section);
+            if (times.getCount() > 0)
+                l.info("| " + String.format("%-11s ", section.name().toLowerCase()) + formatTimes(times));
+        }
+        l.info("| bytes       p50 " + metrics.getBytes().valueAtPercentile(50)
+                + "  p99 " + metrics.getBytes().valueAtPercentile(99)
+                + "  max " + metrics.getBytes().getMax());
+
+        l.info("Slowest files, links excluded:");
+        for (ParseMetrics.FileStats file : metrics.getSlowest()) {
+            StringBuilder sections = new StringBuilder();
+            for (ParseMetrics.Section section : ParseMetrics.Section.values()) {
+                if (section != ParseMetrics.Section.LINKS && file.getSectionNanos(section) > 0)
+                    sections.append("  ").append(section.name().toLowerCase()).append(' ')
+                            .append(formatMillis(file.getSectionNanos(section)));
+            }
+            l.info("| " + formatMillis(file.getOwnNanos()) + "  " + file.getBytes() + " bytes  "
+                    + file.getEvents() + " events" + sections + "  " + file.getProcFilename());
+        }
+    }
+
+    private static String formatTimes(ConcurrentHistogram times) {
+        return "p50 " + formatMillis(times.valueAtPercentile(50))
+                + "  p90 " + formatMillis(times.valueAtPercentile(90))
+                + "  p99 " + formatMillis(times.valueAtPercentile(99))
+                + "  max " + formatMillis(times.getMax())
+                + "  total " + formatMillis(times.getSum());
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.3f ms", nanos / 1e6);
+    }
+
+    private static void logUpdates(List<WatchedProcesses.Update> updates) {
+
+        for (WatchedProcesses.Update update : updates) {
+            if (update.isRemoved())
+                l.info("Process " + update.getProcFilename() + " was deleted");
+            for (MissingReference ref : update.getAddedMissingRefs()) {
+                l.warn("New missing reference: " + ref.getRefValue() + " - " + ref.getType() + " from "
+                        + ref.getReferencingProcFilename()
+                        + (ref.getReferencingStepName() != null ? " (" + ref.getReferencingStepName() + ")" : ""));
+            }
+            for (MissingReference ref : update.getResolvedMissingRefs()) {
+                l.info("Missing reference gone: " + ref.getRefValue() + " - " + ref.getType() + " from "
+                        + ref.getReferencingProcFilename()
+                        + (ref.getReferencingStepName() != null ? " (" + ref.getReferencingStepName() + ")" : ""));
+            }
+        }
+    }
+
+    private static void exportConnectionUsage(ConnectionUsageIndex connectionUsage, File outDir) {
+
+        File exportFile = new File(outDir, ConnectionUsageIndex.EXPORT_FILENAME);
+        if (writeExport(exportFile, connectionUsage::export))
+            l.info("Connection usage of " + connectionUsage.connectionCount() + " connections written to " + exportFile);
+    }
+
+    private static void exportConnectionConflicts(ConnectionConflictCollector connectionConflicts, File outDir) {
+
+        File exportFile = new File(outDir, ConnectionConflictCollector.EXPORT_FILENAME);
+        if (!writeExport(exportFile, connectionConflicts::export))
+            return;
+
+        List<String> conflicts = connectionConflicts.conflictingNames();
+        l.info("Connections: " + connectionConflicts.nameCount() + " names, "
+                + connectionConflicts.definitionCount() + " distinct definitions, "
+                + conflicts.size() + " defined in conflicting ways");
+        for (String name : conflicts) {
+            l.warn("| " + name + ": " + connectionConflicts.definitionsOf(name).size() + " definitions");
+        }
+        if (!conflicts.isEmpty())
+            l.info("Connection conflicts written to " + exportFile);
+    }
+
+    /**
+     * Writes exportFile, creating its directory if needed. Returns false, once
+     * the error is logged, when it cannot be written.
+     */
+    private static boolean writeExport(File exportFile, IOConsumer<Writer> export) {
+
+        File outDir = exportFile.getParentFile();
+        try {
+            if (!outDir.isDirectory() && !outDir.mkdirs())
+                throw new IOException("unable to create output directory");
+
+            try (Writer out = Files.newBufferedWriter(exportFile.toPath(), StandardCharsets.UTF_8)) {
+                export.accept(out);
+            }
+            return true;
+        } catch (IOException e) {
+            l.error("Unable to write " + exportFile + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void logImpact(DependencyGraph graph, String procFilename) {
+
+        int id;
+        try {
+            id = graph.idOf(new File(procFilename).getCanonicalPath());
+        } catch (IOException e) {
+            id = -1;
+        }
+
+        if (id < 0) {
+            l.info("Process " + procFilename + " is not linked by any analyzed process");
+            return;
+        }
+
+        int[] impacted = graph.transitiveCallers(id);
+        l.info("Processes impacted by a change to " + procFilename + ": " + impacted.length);
+        for (int caller : impacted) {
+            l.info("| " + graph.procFilenameOf(caller));
         }
     }
 
@@ -145,40 +877,111 @@ public class PDIAnalyzer {
         return listOfChecks;
     }
 
-    private static void getFilesList(File f, ArrayList<File> completeFilesList, boolean recurse) {
+    private ParserContext createParserContext() {
+
+        ParserContext context = new ParserContext(parseCacheSize);
+        context.setMaxDepth(maxDepth);
+        context.setParsePlan(parsePlan);
+        context.setKettleEnvironment(kettleEnvironment);
+        context.setMetrics(parseMetrics);
+        context.setVariables(new VariableResolver(VariableScope.EMPTY.with(kettleEnvironment.getVariables())));
+
+        return context;
+    }
+
+    private AnalysisIndex loadIndex(boolean followLinks) {
+
+        if (!incremental)
+            return null;
+
+        if (outDir == null) {
+            l.error("Incremental analysis requires an output directory, all the files will be parsed");
+            return null;
+        }
+
+        File indexDir = new File(outDir);
+        if (!indexDir.isDirectory() && !indexDir.mkdirs()) {
+            l.error("Unable to create output directory " + outDir + ", all the files will be parsed");
+            return null;
+        }
+
+        // Metadata collected with other settings cannot be reused
+        return AnalysisIndex.load(indexDir, "followLinks=" + followLinks + ";maxDepth=" + maxDepth
+                + ";plan=" + parsePlan
+                + ";kettleEnvironment=" + kettleEnvironment.getFingerprint());
+    }
 
-        File[] files = f.listFiles();
-        for (File item : files) {
-            if (recurse && item.isDirectory() && !item.isHidden()) {
-                getFilesList(item, completeFilesList, recurse);
-            } else if (item.isFile() && !item.isHidden() &&
-                    (item.getName().endsWith(EXT_PDI_JOB) ||
-                            item.getName().endsWith(EXT_PDI_TRANSFORMATION))) {
-                completeFilesList.add(item);
+    private void saveIndex(AnalysisIndex index, boolean prune) {
+
+        if (index == null)
+            return;
+
+        try {
+            index.save(prune);
+        } catch (IOException e) {
+            l.error("Unable to write analysis index to " + outDir + ": " + e.getMessage());
+        }
+    }
+
+    private ProcessMetadata startAnalysis(File f, boolean followLinks, ParserContext context, AnalysisIndex index) {
+
+        ProcessMetadata m = index != null ? index.lookup(f, context.getParseCache()) : null;
+        if (m == null) {
+            m = startAnalysis(f, followLinks, context);
+            if (index != null && m != null)
+                index.update(f, m);
+        }
+
+        if (m != null) {
+            for (Consumer<ProcessMetadata> workerConsumer : workerConsumers) {
+                workerConsumer.accept(m);
             }
         }
+
+        return m;
     }
 
-    private ProcessMetadata startAnalysis(File f, boolean followLinks) {
+    private ProcessMetadata startAnalysis(File f, boolean followLinks, ParserContext context) {
 
-        ProcessMetadata m = null;
         String name = f.getName();
 
         // TODO By default for now we output everything to console output
-        if (name.endsWith(EXT_PDI_JOB)) {
-            JobParser pje = new JobParser(f, 0, followLinks);
-            m = pje.parse();
-
-            if (m.getMissingRefs() != null && m.getMissingRefs().isEmpty()) {
-                l.info ("We have missing refs!");
+        // Going through the parse cache lets a process already parsed as a link be reused, and vice versa
+        return context.getParseCache().getOrParse(f, () -> {
+            ProcessMetadata m = null;
+
+            if (name.endsWith(EXT_PDI_JOB)) {
+                JobParser pje = new JobParser(f, 0, followLinks, context);
+                m = pje.parse();
+            } else if (name.endsWith(EXT_PDI_TRANSFORMATION)) {
+                TransformationParser parseTransf = new TransformationParser(f, 0, followLinks, context);
+                m = parseTransf.parse();
             }
 
-        } else if (name.endsWith(EXT_PDI_TRANSFORMATION)) {
-            TransformationParser parseTransf = new TransformationParser(f, 0, followLinks);
-            m = parseTransf.parse();
-        }
+            return m;
+        });
+    }
 
-        return m;
+    @FunctionalInterface
+    private interface IOConsumer<T> {
+        void accept(T t) throws IOException;
+    }
+
+    private static class WalkInterruptedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "pdi-analyzer-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
     }
 
 }
@@ -0,0 +1,326 @@
+package org.serasoft.pdi.analyzer;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.ParseCache;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class Name   : AnalysisIndex.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : On-disk index of the metadata collected in previous runs, stored
+ * under the output directory. An entry is reused as long as its file and every
+ * file it links to, found or missing at the time, still have the same
+ * modification time and size. Index written with different analysis settings
+ * is ignored. Reading it only instantiates the classes the index is made of, so
+ * a tampered file cannot run code through deserialization.
+ */
+public class AnalysisIndex {
+
+    public static final String INDEX_FILENAME = "pdi-analyzer.index";
+
+    static final int FORMAT_VERSION = 2;
+    private static final Stamp MISSING = new Stamp(-1L, -1L);
+
+    private static final String MODEL_PACKAGE = ProcessMetadata.class.getPackage().getName() + ".";
+    // Classes, besides the model ones, that an index may contain
+    private static final Set<String> ALLOWED_CLASSES = new HashSet<>(Arrays.asList(
+            Entry.class.getName(),
+            Stamp.class.getName(),
+            "java.lang.Boolean",
+            "java.lang.Enum",
+            "java.lang.Integer",
+            "java.lang.Long",
+            "java.lang.Number",
+            "java.lang.String",
+            "java.io.File",
+            "java.util.ArrayList",
+            "java.util.Arrays$ArrayList",
+            "java.util.HashMap",
+            "java.util.HashSet",
+            "java.util.LinkedHashMap",
+            "java.util.LinkedHashSet",
+            "java.util.LinkedList",
+            "java.util.TreeMap"));
+
+    private static Logger l = LoggerFactory.getLogger(AnalysisIndex.class);
+
+    private final File indexFile;
+    private final String settings;
+    private final Map<String, Entry> entries;
+    private final Set<String> analyzedFiles = ConcurrentHashMap.newKeySet();
+    // Stamps read during this run, so that a file linked by many processes is stat'ed once
+    private final Map<String, Stamp> currentStamps = new ConcurrentHashMap<>();
+
+    private AnalysisIndex(File indexFile, String settings, Map<String, Entry> entries) {
+        this.indexFile = indexFile;
+        this.settings = settings;
+        this.entries = entries;
+    }
+
+    /**
+     * Loads the index kept in outDir. An index that is missing, unreadable or
+     * written with other settings gives an empty index.
+     */
+    public static AnalysisIndex load(File outDir, String settings) {
+
+        File indexFile = new File(outDir, INDEX_FILENAME);
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+        if (indexFile.isFile()) {
+            try (ObjectInputStream in = new IndexInputStream(
+                    new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+
+                int version = in.readInt();
+                String indexSettings = in.readUTF();
+                if (version == FORMAT_VERSION && indexSettings.equals(settings)) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Entry> stored = (Map<String, Entry>) in.readObject();
+                    entries.putAll(stored);
+                } else {
+                    l.info("Analysis index " + indexFile + " was built with other settings, it will be rebuilt");
+                }
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                l.warn("Unable to read analysis index " + indexFile + ", it will be rebuilt: " + e);
+            }
+        }
+
+        return new AnalysisIndex(indexFile, settings, entries);
+    }
+
+    /**
+     * Returns the metadata indexed for procFile if neither the file nor any of its
+     * dependencies changed, null otherwise. The processes linked by a valid entry
+     * are added to parseCache, so that a changed caller that is parsed again
+     * still reuses them.
+     */
+    public ProcessMetadata lookup(File procFile, ParseCache parseCache) {
+
+        String path = canonicalPathOf(procFile);
+        analyzedFiles.add(path);
+
+        Entry entry = entries.get(path);
+        if (entry == null || !entry.stamp.equals(currentStamp(path)))
+            return null;
+
+        for (Map.Entry<String, Stamp> dependency : entry.dependencies.entrySet()) {
+            if (!dependency.getValue().equals(currentStamp(dependency.getKey())))
+                return null;
+        }
+
+        seedParseCache(entry.metadata, parseCache, new IdentityHashMap<>());
+        return entry.metadata;
+    }
+
+    public void update(File procFile, ProcessMetadata m) {
+
+        String path = canonicalPathOf(procFile);
+        analyzedFiles.add(path);
+
+        Map<String, Stamp> dependencies = new HashMap<>();
+        collectDependencies(m, dependencies, new IdentityHashMap<>());
+        dependencies.remove(path);
+
+        entries.put(path, new Entry(currentStamp(path), dependencies, m));
+    }
+
+    /**
+     * Writes the index. When prune is set, entries for files not analyzed in this
+     * run are dropped, as they were deleted or moved out of the analyzed tree.
+     */
+    public void save(boolean prune) throws IOException {
+
+        if (prune)
+            entries.keySet().retainAll(analyzedFiles);
+
+        File tmpFile = new File(indexFile.getPath() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(settings);
+            out.writeObject(new HashMap<>(entries));
+        }
+
+        // Replace the previous index only once the new one is complete
+        Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void collectDependencies(ProcessMetadata m,
+                                     Map<String, Stamp> dependencies,
+                                     IdentityHashMap<ProcessMetadata, Boolean> visited) {
+
+        if (m == null || visited.put(m, Boolean.TRUE) != null || m.getItems() == null)
+            return;
+
+        for (ProcessItem item : m.getItems().values()) {
+            if (item.getLinkedProcFilename() == null)
+                continue;
+
+            String linkedPath = canonicalPathOf(new File(item.getLinkedProcFilename()));
+            dependencies.put(linkedPath, currentStamp(linkedPath));
+            collectDependencies(item.getLinkedProcess(), dependencies, visited);
+        }
+    }
+
+    private void seedParseCache(ProcessMetadata m,
+                                ParseCache parseCache,
+                                IdentityHashMap<ProcessMetadata, Boolean> visited) {
+
+        if (m == null || visited.put(m, Boolean.TRUE) != null)
+            return;
+
+        if (m.getProcFilename() != null && !m.isTruncated() && !m.isCycleCut()) {
+            Stamp stamp = currentStamp(m.getProcFilename());
+            if (stamp != MISSING)
+                parseCache.put(new ParseCache.Key(m.getProcFilename(), stamp.lastModified, stamp.size), m);
+        }
+
+        if (m.getItems() != null) {
+            for (ProcessItem item : m.getItems().values()) {
+                seedParseCache(item.getLinkedProcess(), parseCache, visited);
+            }
+        }
+    }
+
+    private Stamp currentStamp(String path) {
+        return currentStamps.computeIfAbsent(path, p -> {
+            File f = new File(p);
+            return f.isFile() ? new Stamp(f.lastModified(), f.length()) : MISSING;
+        });
+    }
+
+    private static String canonicalPathOf(File f) {
+        try {
+            return f.getCanonicalPath();
+        } catch (IOException e) {
+            return f.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Object stream resolving only the classes an index is made of.
+     */
+    private static class IndexInputStream extends ObjectInputStream {
+
+        IndexInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+
+            if (!isAllowed(desc.getName()))
+                throw new InvalidClassException(desc.getName(), "not allowed in an analysis index");
+
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("Proxy classes are not allowed in an analysis index");
+        }
+
+        static boolean isAllowed(String className) {
+
+            // Arrays of primitives, or of allowed classes
+            String name = className;
+            while (name.startsWith("["))
+                name = name.substring(1);
+            if (name.length() == 1)
+                return true;
+            if (name.startsWith("L") && name.endsWith(";"))
+                name = name.substring(1, name.length() - 1);
+
+            return ALLOWED_CLASSES.contains(name)
+                    || name.startsWith("java.util.Collections$")
+                    || (name.startsWith(MODEL_PACKAGE) && name.indexOf('.', MODEL_PACKAGE.length()) < 0);
+        }
+    }
+
+    private static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Stamp stamp;
+        private final Map<String, Stamp> dependencies;
+        private final ProcessMetadata metadata;
+
+        Entry(Stamp stamp, Map<String, Stamp> dependencies, ProcessMetadata metadata) {
+            this.stamp = stamp;
+            this.dependencies = dependencies;
+            this.metadata = metadata;
+        }
+    }
+
+    private static class Stamp implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long lastModified;
+        private final long size;
+
+        Stamp(long lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Stamp)) return false;
+
+            Stamp stamp = (Stamp) o;
+            return lastModified == stamp.lastModified && size == stamp.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (lastModified ^ (lastModified >>> 32)) + (int) (size ^ (size >>> 32));
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.serasoft.pdi.analyzer;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.Connection;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.utils.ConnectionFingerprint;
+import org.serasoft.pdi.report.JsonWriter;
+import org.serasoft.pdi.report.ProcessMetadataJson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Class Name   : ConnectionConflictCollector.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Groups the connection definitions of a run by name and by
+ * fingerprint, so that the thousands of copies of a connection collapse into
+ * one entry per distinct definition. A name with more than one definition is
+ * a conflict: its definitions are reported with the settings that differ from
+ * the most widespread one. Worker threads feed it directly, each name having
+ * its own concurrent bucket of definitions.
+ */
+public class ConnectionConflictCollector implements Consumer<ProcessMetadata> {
+
+    public static final String EXPORT_FILENAME = "pdi-analyzer-connection-conflicts.ndjson";
+
+    // Files listed for each definition in the report
+    public static final int MAX_SAMPLE_FILES = 5;
+
+    // Most widespread first
+    private static final Comparator<Definition> DEFINITION_ORDER = Comparator
+            .comparingInt(Definition::getFileCount).reversed()
+            .thenComparingLong(Definition::getFingerprint);
+
+    private final ConcurrentMap<String, ConcurrentMap<Long, Definition>> definitionsByName = new ConcurrentHashMap<>();
+
+    /**
+     * Collects the connections of m and of the processes it links.
+     */
+    @Override
+    public void accept(ProcessMetadata m) {
+        collect(m, new IdentityHashMap<>());
+    }
+
+    public void add(Connection conn, String procFilename) {
+
+        if (conn.getName() == null)
+            return;
+
+        ConcurrentMap<Long, Definition> definitions = definitionsByName.get(conn.getName());
+        if (definitions == null)
+            definitions = definitionsByName.computeIfAbsent(conn.getName(), name -> new ConcurrentHashMap<>());
+
+        Definition definition = definitions.get(conn.getFingerprint());
+        if (definition == null)
+            definition = definitions.computeIfAbsent(conn.getFingerprint(), fingerprint -> new Definition(conn));
+
+        definition.files.add(procFilename != null ? procFilename : "");
+    }
+
+    /**
+     * Distinct definitions of connectionName, most widespread first.
+     */
+    public List<Definition> definitionsOf(String connectionName) {
+
+        ConcurrentMap<Long, Definition> definitions = definitionsByName.get(connectionName);
+        if (definitions == null)
+            return Collections.emptyList();
+
+        List<Definition> sorted = new ArrayList<>(definitions.values());
+        sorted.sort(DEFINITION_ORDER);
+        return sorted;
+    }
+
+    public int nameCount() {
+        return definitionsByName.size();
+    }
+
+    public int definitionCount() {
+
+        int count = 0;
+        for (ConcurrentMap<Long, Definition> definitions : definitionsByName.values()) {
+            count += definitions.size();
+        }
+        return count;
+    }
+
+    /**
+     * Names with more than one definition, sorted.
+     */
+    public List<String> conflictingNames() {
+
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentMap<Long, Definition>> name : definitionsByName.entrySet()) {
+            if (name.getValue().size() > 1)
+                names.add(name.getKey());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Writes one JSON record per conflicting name, with its definitions most
+     * widespread first. Each definition after the first lists the settings that
+     * differ from the first one; passwords are masked.
+     */
+    public void export(Writer out) throws IOException {
+
+        for (String name : conflictingNames()) {
+            List<Definition> definitions = definitionsOf(name);
+            Definition reference = definitions.get(0);
+
+            JsonWriter json = new JsonWriter();
+            json.beginObject().member("connection", name);
+            json.name("definitions").beginArray();
+            for (Definition definition : definitions) {
+                json.beginObject()
+                        .member("fingerprint", ConnectionFingerprint.toHex(definition.getFingerprint()))
+                        .name("files").value(definition.getFileCount());
+
+                json.name("sampleFiles").beginArray();
+                for (String file : definition.getSampleFiles()) {
+                    json.value(file);
+                }
+                json.endArray();
+
+                if (definition != reference) {
+                    json.name("differences").beginObject();
+                    writeDifferences(reference.connection.getProperties(), definition.connection.getProperties(), json);
+                    writeDifferences(reference.connection.getJdbcAttributes(), definition.connection.getJdbcAttributes(), json);
+                    json.endObject();
+                }
+                json.endObject();
+            }
+            json.endArray().endObject();
+
+            json.getBuffer().append('\n');
+            out.append(json.getBuffer());
+        }
+    }
+
+    private static void writeDifferences(Map<String, String> reference, Map<String, String> settings, JsonWriter json) {
+
+        Set<String> names = new TreeSet<>();
+        if (reference != null)
+            names.addAll(reference.keySet());
+        if (settings != null)
+            names.addAll(settings.keySet());
+
+        for (String name : names) {
+            String referenceValue = normalized(reference != null ? reference.get(name) : null);
+            String value = normalized(settings != null ? settings.get(name) : null);
+            if (referenceValue.equals(value))
+                continue;
+
+            json.name(name).value(ProcessMetadataJson.maskedValue(name, value));
+        }
+    }
+
+    private static String normalized(String value) {
+        return value != null ? value.trim() : "";
+    }
+
+    private void collect(ProcessMetadata m, IdentityHashMap<ProcessMetadata, Boolean> visited) {
+
+        // Linked processes are shared between callers: visit each one once
+        if (m == null || visited.put(m, Boolean.TRUE) != null)
+            return;
+
+        if (m.getConnections() != null) {
+            for (Connection conn : m.getConnections()) {
+                add(conn, m.getProcFilename());
+            }
+        }
+
+        if (m.getItems() != null) {
+            for (ProcessItem item : m.getItems().values()) {
+                collect(item.getLinkedProcess(), visited);
+            }
+        }
+    }
+
+    /**
+     * One distinct definition of a connection, with the files that hold it.
+     */
+    public static class Definition {
+
+        private final Connection connection;
+        private final Set<String> files = ConcurrentHashMap.newKeySet();
+
+        Definition(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * One of the equal copies of the definition.
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        public long getFingerprint() {
+            return connection.getFingerprint();
+        }
+
+        public int getFileCount() {
+            return files.size();
+        }
+
+        public List<String> getSampleFiles() {
+
+            List<String> sample = new ArrayList<>(new TreeSet<>(files));
+            return sample.size() > MAX_SAMPLE_FILES ? sample.subList(0, MAX_SAMPLE_FILES) : sample;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.serasoft.pdi.analyzer;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.Connection;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.report.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Class Name   : ConnectionUsageIndex.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Inverted index from connection name to the steps and job
+ * entries that use it, built by the worker threads while the analysis runs.
+ * Each connection has its own concurrent bucket of usages, keyed by process
+ * file and item, so a process reached through several links is indexed once.
+ */
+public class ConnectionUsageIndex implements Consumer<ProcessMetadata> {
+
+    public static final String EXPORT_FILENAME = "pdi-analyzer-connection-usage.ndjson";
+
+    private static final Comparator<Usage> USAGE_ORDER = Comparator
+            .comparing(Usage::getProcFilename, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(Usage::getItemName, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Usage>> usagesByConnection = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes the items of m, and of the processes it links, that use a connection.
+     */
+    @Override
+    public void accept(ProcessMetadata m) {
+        index(m, new IdentityHashMap<>());
+    }
+
+    /**
+     * Indexes the items of m that use a connection, leaving out the processes it
+     * links.
+     */
+    public void addItemsOf(ProcessMetadata m) {
+
+        if (m.getItems() == null)
+            return;
+
+        for (ProcessItem item : m.getItems().values()) {
+            if (item.getConnectionName() != null)
+                add(new Usage(item.getConnectionName(), definitionOf(m, item.getConnectionName()), m, item));
+        }
+    }
+
+    /**
+     * Drops the usages of the items of m, once the process was parsed again or
+     * deleted. The processes it links are left alone.
+     */
+    public void removeItemsOf(ProcessMetadata m) {
+
+        if (m.getItems() == null)
+            return;
+
+        for (ProcessItem item : m.getItems().values()) {
+            if (item.getConnectionName() == null)
+                continue;
+
+            ConcurrentMap<String, Usage> usages = usagesByConnection.get(item.getConnectionName());
+            if (usages != null) {
+                usages.remove(m.getProcFilename() + '\u0000' + item.getName());
+                if (usages.isEmpty())
+                    usagesByConnection.remove(item.getConnectionName(), usages);
+            }
+        }
+    }
+
+    public void add(Usage usage) {
+
+        ConcurrentMap<String, Usage> usages = usagesByConnection.get(usage.getConnectionName());
+        if (usages == null)
+            usages = usagesByConnection.computeIfAbsent(usage.getConnectionName(), name -> new ConcurrentHashMap<>());
+
+        usages.putIfAbsent(usage.getProcFilename() + '\u0000' + usage.getItemName(), usage);
+    }
+
+    /**
+     * Items using connectionName, in no particular order.
+     */
+    public List<Usage> usagesOf(String connectionName) {
+
+        ConcurrentMap<String, Usage> usages = usagesByConnection.get(connectionName);
+        return usages != null ? new ArrayList<>(usages.values()) : Collections.emptyList();
+    }
+
+    public int usageCount(String connectionName) {
+
+        ConcurrentMap<String, Usage> usages = usagesByConnection.get(connectionName);
+        return usages != null ? usages.size() : 0;
+    }
+
+    public int connectionCount() {
+        return usagesByConnection.size();
+    }
+
+    /**
+     * Writes the whole index, one JSON record per usage, sorted by connection
+     * name, process file and item name.
+     */
+    public void export(Writer out) throws IOException {
+
+        JsonWriter json = new JsonWriter();
+        for (Map.Entry<String, ConcurrentMap<String, Usage>> connection : new TreeMap<>(usagesByConnection).entrySet()) {
+            List<Usage> usages = new ArrayList<>(connection.getValue().values());
+            usages.sort(USAGE_ORDER);
+
+            for (Usage usage : usages) {
+                json.getBuffer().setLength(0);
+                json.beginObject()
+                        .member("connection", usage.getConnectionName())
+                        .member("server", usage.getServer())
+                        .member("database", usage.getDatabase())
+                        .member("procFilename", usage.getProcFilename())
+                        .member("procName", usage.getProcName())
+                        .member("item", usage.getItemName())
+                        .member("class", usage.getItemClass())
+                        .endObject();
+                json.getBuffer().append('\n');
+                out.append(json.getBuffer());
+            }
+        }
+    }
+
+    private void index(ProcessMetadata m, IdentityHashMap<ProcessMetadata, Boolean> visited) {
+
+        // Linked processes are shared between callers: visit each one once
+        if (m == null || visited.put(m, Boolean.TRUE) != null || m.getItems() == null)
+            return;
+
+        addItemsOf(m);
+        for (ProcessItem item : m.getItems().values()) {
+            index(item.getLinkedProcess(), visited);
+        }
+    }
+
+    private static Connection definitionOf(ProcessMetadata m, String connectionName) {
+
+        if (m.getConnections() != null) {
+            for (Connection conn : m.getConnections()) {
+                if (connectionName.equals(conn.getName()))
+                    return conn;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * One step or job entry using a connection.
+     */
+    public static class Usage {
+
+        private final String connectionName;
+        private final String server;
+        private final String database;
+        private final String procFilename;
+        private final String procName;
+        private final String itemName;
+        private final String itemClass;
+
+        public Usage(String connectionName, Connection definition, ProcessMetadata m, ProcessItem item) {
+            this.connectionName = connectionName;
+            this.server = definition != null && definition.getProperties() != null
+                    ? definition.getProperties().get("server") : null;
+            this.database = definition != null && definition.getProperties() != null
+                    ? definition.getProperties().get("database") : null;
+            this.procFilename = m.getProcFilename();
+            this.procName = m.getName();
+            this.itemName = item.getName();
+            this.itemClass = item.getItemClass();
+        }
+
+        public String getConnectionName() {
+            return connectionName;
+        }
+
+        /**
+         * Host of the connection, as defined in the process or in shared.xml.
+         */
+        public String getServer() {
+            return server;
+        }
+
+        public String getDatabase() {
+            return database;
+        }
+
+        public String getProcFilename() {
+            return procFilename;
+        }
+
+        public String getProcName() {
+            return procName;
+        }
+
+        public String getItemName() {
+            return itemName;
+        }
+
+        public String getItemClass() {
+            return itemClass;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.serasoft.pdi.analyzer;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class Name   : DependencyGraph.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Repository wide graph of the links between processes. Each
+ * process file is a node with an int id and the edges are stored twice, as
+ * callees and as callers, in compressed sparse row form: the neighbours of
+ * node n are the entries of the targets array between offsets[n] and
+ * offsets[n + 1]. Shared sub-processes are a single node however many
+ * processes call them.
+ */
+public class DependencyGraph {
+
+    private final String[] nodes;
+    private final Map<String, Integer> ids;
+
+    private final int[] calleeOffsets;
+    private final int[] callees;
+    private final int[] callerOffsets;
+    private final int[] callers;
+
+    private DependencyGraph(String[] nodes,
+                            Map<String, Integer> ids,
+                            int[] calleeOffsets,
+                            int[] callees,
+                            int[] callerOffsets,
+                            int[] callers) {
+        this.nodes = nodes;
+        this.ids = ids;
+        this.calleeOffsets = calleeOffsets;
+        this.callees = callees;
+        this.callerOffsets = callerOffsets;
+        this.callers = callers;
+    }
+
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    public int edgeCount() {
+        return callees.length;
+    }
+
+    /**
+     * Returns the id of the process with the given canonical pathname, or -1.
+     */
+    public int idOf(String procFilename) {
+        Integer id = ids.get(procFilename);
+        return id != null ? id : -1;
+    }
+
+    public String procFilenameOf(int id) {
+        return nodes[id];
+    }
+
+    /**
+     * Processes directly called by the given one.
+     */
+    public int[] callees(int id) {
+        return Arrays.copyOfRange(callees, calleeOffsets[id], calleeOffsets[id + 1]);
+    }
+
+    /**
+     * Processes directly calling the given one.
+     */
+    public int[] callers(int id) {
+        return Arrays.copyOfRange(callers, callerOffsets[id], callerOffsets[id + 1]);
+    }
+
+    public int callersCount(int id) {
+        return callerOffsets[id + 1] - callerOffsets[id];
+    }
+
+    /**
+     * Every process that reaches the given one through a chain of calls, that is
+     * what is impacted by a change to it.
+     */
+    public int[] transitiveCallers(int id) {
+        return reachable(id, callerOffsets, callers);
+    }
+
+    /**
+     * Every process reached from the given one through a chain of calls.
+     */
+    public int[] transitiveCallees(int id) {
+        return reachable(id, calleeOffsets, callees);
+    }
+
+    private int[] reachable(int start, int[] offsets, int[] targets) {
+
+        boolean[] visited = new boolean[nodes.length];
+        int[] queue = new int[nodes.length];
+        int head = 0;
+        int tail = 0;
+
+        // The start node is not marked up front, so it is part of the result only when it is on a cycle
+        int n = start;
+        while (true) {
+            for (int i = offsets[n]; i < offsets[n + 1]; i++) {
+                int next = targets[i];
+                if (!visited[next]) {
+                    visited[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+
+            if (head == tail)
+                break;
+            n = queue[head++];
+        }
+
+        return Arrays.copyOf(queue, tail);
+    }
+
+    /**
+     * Collects nodes and edges from parsed processes, then builds the graph. Not
+     * thread-safe: feed it from a single thread, such as the analyzer's results
+     * consumer.
+     */
+    public static class Builder {
+
+        private final List<String> nodes = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final IdentityHashMap<ProcessMetadata, Boolean> visited = new IdentityHashMap<>();
+
+        private int[] edgeFrom = new int[256];
+        private int[] edgeTo = new int[256];
+        private int edgeCount;
+
+        /**
+         * Adds the process, the processes its items link to, and the processes
+         * reached by following the links that were parsed.
+         */
+        public Builder addProcess(ProcessMetadata m) {
+
+            if (m == null || m.getProcFilename() == null || visited.put(m, Boolean.TRUE) != null)
+                return this;
+
+            int from = nodeId(m.getProcFilename());
+            if (m.getItems() != null) {
+                for (ProcessItem item : m.getItems().values()) {
+                    if (item.getLinkedProcFilename() != null) {
+                        addEdge(from, nodeId(item.getLinkedProcFilename()));
+                        addProcess(item.getLinkedProcess());
+                    }
+                }
+            }
+
+            return this;
+        }
+
+        /**
+         * Adds the nodes and edges of graph, keeping its ids, except the edges
+         * leaving the processes in replaced: those processes are added again, or
+         * not at all when they were deleted.
+         */
+        public Builder addGraph(DependencyGraph graph, Set<String> replaced) {
+
+            for (int id = 0; id < graph.nodes.length; id++) {
+                int from = nodeId(graph.nodes[id]);
+                if (replaced.contains(graph.nodes[id]))
+                    continue;
+
+                for (int i = graph.calleeOffsets[id]; i < graph.calleeOffsets[id + 1]; i++) {
+                    addEdge(from, nodeId(graph.nodes[graph.callees[i]]));
+                }
+            }
+
+            return this;
+        }
+
+        public Builder addEdge(String fromProcFilename, String toProcFilename) {
+            addEdge(nodeId(fromProcFilename), nodeId(toProcFilename));
+            return this;
+        }
+
+        public DependencyGraph build() {
+
+            int n = nodes.size();
+            int[] calleeOffsets = new int[n + 1];
+            int[] callees = new int[edgeCount];
+            fill(edgeFrom, edgeTo, calleeOffsets, callees);
+            int[] calleesCompact = deduplicate(calleeOffsets, callees);
+
+            // Callers are built from the deduplicated callees, so both sides agree
+            int edges = calleesCompact.length;
+            int[] from = new int[edges];
+            for (int node = 0; node < n; node++) {
+                for (int i = calleeOffsets[node]; i < calleeOffsets[node + 1]; i++) {
+                    from[i] = node;
+                }
+            }
+            int[] callerOffsets = new int[n + 1];
+            int[] callers = new int[edges];
+            fill(calleesCompact, from, callerOffsets, callers);
+            sortSlices(callerOffsets, callers);
+
+            return new DependencyGraph(nodes.toArray(new String[n]),
+                    new HashMap<>(ids),
+                    calleeOffsets,
+                    calleesCompact,
+                    callerOffsets,
+                    callers);
+        }
+
+        private int nodeId(String procFilename) {
+            Integer id = ids.get(procFilename);
+            if (id == null) {
+                id = nodes.size();
+                nodes.add(procFilename);
+                ids.put(procFilename, id);
+            }
+            return id;
+        }
+
+        private void addEdge(int from, int to) {
+            if (edgeCount == edgeFrom.length) {
+                edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+                edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+            }
+            edgeFrom[edgeCount] = from;
+            edgeTo[edgeCount] = to;
+            edgeCount++;
+        }
+
+        /**
+         * Counting sort of the edges by source node into offsets/targets.
+         */
+        private static void fill(int[] sources, int[] destinations, int[] offsets, int[] targets) {
+
+            for (int i = 0; i < targets.length; i++) {
+                offsets[sources[i] + 1]++;
+            }
+            for (int i = 1; i < offsets.length; i++) {
+                offsets[i] += offsets[i - 1];
+            }
+
+            int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+            for (int i = 0; i < targets.length; i++) {
+                targets[next[sources[i]]++] = destinations[i];
+            }
+        }
+
+        private static void sortSlices(int[] offsets, int[] targets) {
+            for (int node = 0; node < offsets.length - 1; node++) {
+                Arrays.sort(targets, offsets[node], offsets[node + 1]);
+            }
+        }
+
+        /**
+         * Sorts each node's targets and removes duplicate edges, rewriting offsets
+         * in place.
+         */
+        private static int[] deduplicate(int[] offsets, int[] targets) {
+
+            sortSlices(offsets, targets);
+
+            int write = 0;
+            int start = offsets[0];
+            for (int node = 0; node < offsets.length - 1; node++) {
+                int end = offsets[node + 1];
+                offsets[node] = write;
+                for (int i = start; i < end; i++) {
+                    if (i == start || targets[i] != targets[i - 1])
+                        targets[write++] = targets[i];
+                }
+                start = end;
+            }
+            offsets[offsets.length - 1] = write;
+
+            return Arrays.copyOf(targets, write);
+        }
+    }
+}
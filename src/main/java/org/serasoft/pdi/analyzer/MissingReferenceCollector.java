@@ -0,0 +1,114 @@
+package org.serasoft.pdi.analyzer;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.MissingReference;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Class Name   : MissingReferenceCollector.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Gathers the missing references of a whole analysis run, grouped
+ * by the file that was not found. Worker threads feed it directly: each missing
+ * file has its own concurrent bucket of callers, so workers reporting different
+ * files never wait for each other and a caller reported twice is kept once.
+ */
+public class MissingReferenceCollector implements Consumer<ProcessMetadata> {
+
+    private static final Comparator<MissingReference> CALLER_ORDER = Comparator
+            .comparing(MissingReference::getReferencingProcFilename, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(MissingReference::getReferencingStepName, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    private final ConcurrentMap<String, ConcurrentMap<String, MissingReference>> callersByTarget = new ConcurrentHashMap<>();
+
+    /**
+     * Collects the missing references of m and of the processes it links.
+     */
+    @Override
+    public void accept(ProcessMetadata m) {
+        collect(m, new IdentityHashMap<>());
+    }
+
+    public void add(MissingReference missingRef) {
+
+        if (missingRef.getRefValue() == null)
+            return;
+
+        ConcurrentMap<String, MissingReference> callers = callersByTarget.get(missingRef.getRefValue());
+        if (callers == null)
+            callers = callersByTarget.computeIfAbsent(missingRef.getRefValue(), target -> new ConcurrentHashMap<>());
+
+        callers.putIfAbsent(missingRef.getReferencingProcFilename() + '\u0000'
+                + missingRef.getReferencingStepName() + '\u0000'
+                + missingRef.getType(), missingRef);
+    }
+
+    public boolean isEmpty() {
+        return callersByTarget.isEmpty();
+    }
+
+    /**
+     * Missing files sorted by path, each with the items that reference it sorted
+     * by caller filename and step name.
+     */
+    public SortedMap<String, List<MissingReference>> summary() {
+
+        SortedMap<String, List<MissingReference>> summary = new TreeMap<>();
+        for (Map.Entry<String, ConcurrentMap<String, MissingReference>> target : callersByTarget.entrySet()) {
+            List<MissingReference> callers = new ArrayList<>(target.getValue().values());
+            callers.sort(CALLER_ORDER);
+            summary.put(target.getKey(), callers);
+        }
+
+        return summary;
+    }
+
+    private void collect(ProcessMetadata m, IdentityHashMap<ProcessMetadata, Boolean> visited) {
+
+        // Linked processes are shared between callers: visit each one once
+        if (m == null || visited.put(m, Boolean.TRUE) != null)
+            return;
+
+        if (m.getMissingRefs() != null) {
+            for (MissingReference missingRef : m.getMissingRefs()) {
+                add(missingRef);
+            }
+        }
+
+        if (m.getItems() != null) {
+            for (ProcessItem item : m.getItems().values()) {
+                collect(item.getLinkedProcess(), visited);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.serasoft.pdi.analyzer;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Class Name   : OrderedResultCollector.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Receives analysis results from the worker threads in any order
+ * and delivers them to the consumer in the order the files were submitted.
+ * A submission permit is held until the result is delivered, so the number of
+ * files in flight or waiting to be delivered never exceeds maxPending.
+ * If the consumer fails, the results still to come are dropped rather than
+ * delivered out of order, and the failure is thrown to the thread submitting
+ * the files by the next reserve or by awaitCompletion.
+ */
+public class OrderedResultCollector {
+
+    private final Consumer<ProcessMetadata> consumer;
+    private final Semaphore permits;
+    private final Map<Long, ProcessMetadata> completed = new HashMap<>();
+
+    private long nextSubmitted = 0;
+    private long nextDelivered = 0;
+    private RuntimeException failure;
+
+    public OrderedResultCollector(int maxPending, Consumer<ProcessMetadata> consumer) {
+        this.consumer = consumer;
+        this.permits = new Semaphore(maxPending);
+    }
+
+    /**
+     * Reserves the next sequence number, blocking while too many results are pending.
+     */
+    public long reserve() throws InterruptedException {
+        permits.acquire();
+        synchronized (this) {
+            if (failure != null) {
+                permits.release();
+                throw failure;
+            }
+            return nextSubmitted++;
+        }
+    }
+
+    /**
+     * Stores the result for the given sequence number and delivers every result
+     * that is now in order. A null result only advances the sequence.
+     */
+    public synchronized void complete(long sequence, ProcessMetadata m) {
+
+        completed.put(sequence, m);
+        while (completed.containsKey(nextDelivered)) {
+            ProcessMetadata next = completed.remove(nextDelivered);
+            nextDelivered++;
+            permits.release();
+            if (next != null && failure == null) {
+                try {
+                    consumer.accept(next);
+                } catch (RuntimeException e) {
+                    // Not thrown here: the worker would lose the results queued behind this one
+                    failure = e;
+                }
+            }
+        }
+
+        if (nextDelivered == nextSubmitted)
+            notifyAll();
+    }
+
+    /**
+     * Waits until every reserved sequence number has been delivered, then throws
+     * the failure of the consumer, if any.
+     */
+    public synchronized void awaitCompletion() throws InterruptedException {
+        while (nextDelivered < nextSubmitted) {
+            wait();
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+}
@@ -0,0 +1,149 @@
+package org.serasoft.pdi.analyzer;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.DirectoryListingCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Class Name   : ProcessFilesWalker.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Lazily walks a directory tree and hands every PDI job or
+ * transformation file to a consumer as soon as it is found. Only the entries
+ * of the directories along the current path are held in memory and each
+ * directory is visited in name order, so the walk is deterministic.
+ */
+public class ProcessFilesWalker {
+
+    private static Logger l = LoggerFactory.getLogger(ProcessFilesWalker.class);
+
+    public static final String EXT_PDI_JOB = ".kjb";
+    public static final String EXT_PDI_TRANSFORMATION = ".ktr";
+
+    private boolean recurse;
+    private DirectoryListingCache directoryListings;
+
+    public ProcessFilesWalker(boolean recurse) {
+        this.recurse = recurse;
+    }
+
+    /**
+     * Hands the entries of each walked directory to directoryListings, so that the
+     * links to files of those directories are checked without listing them again.
+     */
+    public void setDirectoryListings(DirectoryListingCache directoryListings) {
+        this.directoryListings = directoryListings;
+    }
+
+    /**
+     * Walks baseDir and returns the number of files handed to the consumer.
+     */
+    public long walk(Path baseDir, Consumer<File> consumer) throws IOException {
+        return walkDirectory(baseDir, consumer);
+    }
+
+    private long walkDirectory(Path dir, Consumer<File> consumer) throws IOException {
+
+        List<Path> entries = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(dir)) {
+            for (Path entry : dirStream) {
+                entries.add(entry);
+                names.add(entry.getFileName().toString());
+            }
+        }
+        Collections.sort(entries);
+
+        if (directoryListings != null)
+            // Links are checked against canonical paths
+            directoryListings.addListing(dir.toFile().getCanonicalFile(), names);
+
+        long count = 0;
+        for (Path entry : entries) {
+            if (isHidden(entry)) {
+                continue;
+            }
+
+            if (Files.isDirectory(entry)) {
+                if (recurse) {
+                    try {
+                        count += walkDirectory(entry, consumer);
+                    } catch (IOException e) {
+                        l.error("Unable to read directory " + entry + ": " + e.getMessage());
+                    }
+                }
+            } else if (isProcessFile(entry) && Files.isRegularFile(entry)) {
+                consumer.accept(entry.toFile());
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * True when a walk of baseDir hands f to its consumer: f is a process file
+     * in baseDir, or below it when walking recursively, and neither f nor a
+     * directory on the way to it is hidden.
+     */
+    public boolean walks(Path baseDir, Path f) {
+
+        if (!f.startsWith(baseDir) || f.equals(baseDir) || !isProcessFile(f))
+            return false;
+
+        int depth = baseDir.relativize(f).getNameCount();
+        if (depth > 1 && !recurse)
+            return false;
+
+        Path p = f;
+        for (int i = 0; i < depth; i++) {
+            if (isHidden(p))
+                return false;
+            p = p.getParent();
+        }
+
+        return Files.isRegularFile(f);
+    }
+
+    public static boolean isProcessFile(Path p) {
+        String name = p.getFileName().toString();
+        return name.endsWith(EXT_PDI_JOB) || name.endsWith(EXT_PDI_TRANSFORMATION);
+    }
+
+    private static boolean isHidden(Path p) {
+        try {
+            return Files.isHidden(p);
+        } catch (IOException e) {
+            return true;
+        }
+    }
+}
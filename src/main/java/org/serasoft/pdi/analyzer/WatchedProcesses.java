@@ -0,0 +1,216 @@
+package org.serasoft.pdi.analyzer;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.MissingReference;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class Name   : WatchedProcesses.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : The processes of a watched directory, by canonical pathname,
+ * with the links between them kept both ways. When a file is parsed again or
+ * deleted only its own entry and edges are replaced, and the returned Update
+ * tells which of its missing references appeared or went away, so that only
+ * those findings are reported again. Not thread-safe: feed it from a single
+ * thread, such as the watch loop.
+ */
+public class WatchedProcesses {
+
+    private final Map<String, ProcessMetadata> processes = new HashMap<>();
+    private final Map<String, Set<String>> callees = new HashMap<>();
+    private final Map<String, Set<String>> callers = new HashMap<>();
+
+    /**
+     * Adds m, or replaces the previous metadata of the same file.
+     */
+    public Update put(ProcessMetadata m) {
+
+        String procFilename = m.getProcFilename();
+        ProcessMetadata previous = processes.put(procFilename, m);
+        removeEdges(procFilename);
+
+        if (m.getItems() != null) {
+            Set<String> linked = new LinkedHashSet<>();
+            for (ProcessItem item : m.getItems().values()) {
+                if (item.getLinkedProcFilename() != null)
+                    linked.add(item.getLinkedProcFilename());
+            }
+            if (!linked.isEmpty()) {
+                callees.put(procFilename, linked);
+                for (String callee : linked) {
+                    callers.computeIfAbsent(callee, name -> new LinkedHashSet<>()).add(procFilename);
+                }
+            }
+        }
+
+        return new Update(procFilename, false, previous, m);
+    }
+
+    /**
+     * Removes the file, which was deleted. Links to it from other processes are
+     * kept: they are now missing references of their own.
+     */
+    public Update remove(String procFilename) {
+
+        ProcessMetadata previous = processes.remove(procFilename);
+        removeEdges(procFilename);
+
+        return new Update(procFilename, true, previous, null);
+    }
+
+    public boolean contains(String procFilename) {
+        return processes.containsKey(procFilename);
+    }
+
+    public ProcessMetadata get(String procFilename) {
+        return processes.get(procFilename);
+    }
+
+    public int size() {
+        return processes.size();
+    }
+
+    public List<ProcessMetadata> getProcesses() {
+        return new ArrayList<>(processes.values());
+    }
+
+    /**
+     * Processes directly linking to the given one, whether it exists or not.
+     */
+    public Set<String> callersOf(String procFilename) {
+
+        Set<String> direct = callers.get(procFilename);
+        return direct != null ? Collections.unmodifiableSet(direct) : Collections.emptySet();
+    }
+
+    /**
+     * Every process reaching the given one through a chain of links.
+     */
+    public Set<String> transitiveCallersOf(String procFilename) {
+
+        Set<String> reached = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(procFilename);
+        while (!queue.isEmpty()) {
+            for (String caller : callersOf(queue.poll())) {
+                if (reached.add(caller))
+                    queue.add(caller);
+            }
+        }
+
+        return reached;
+    }
+
+    private void removeEdges(String procFilename) {
+
+        Set<String> linked = callees.remove(procFilename);
+        if (linked == null)
+            return;
+
+        for (String callee : linked) {
+            Set<String> calleeCallers = callers.get(callee);
+            if (calleeCallers != null) {
+                calleeCallers.remove(procFilename);
+                if (calleeCallers.isEmpty())
+                    callers.remove(callee);
+            }
+        }
+    }
+
+    /**
+     * What changed for one file: the missing references found by the new parse
+     * and not by the previous one, and those that went away.
+     */
+    public static class Update {
+
+        private final String procFilename;
+        private final boolean removed;
+        private final List<MissingReference> addedMissingRefs;
+        private final List<MissingReference> resolvedMissingRefs;
+
+        Update(String procFilename, boolean removed, ProcessMetadata previous, ProcessMetadata current) {
+
+            Map<String, MissingReference> before = missingRefsOf(previous);
+            Map<String, MissingReference> after = missingRefsOf(current);
+
+            this.procFilename = procFilename;
+            this.removed = removed;
+            this.addedMissingRefs = new ArrayList<>();
+            for (Map.Entry<String, MissingReference> ref : after.entrySet()) {
+                if (!before.containsKey(ref.getKey()))
+                    addedMissingRefs.add(ref.getValue());
+            }
+            this.resolvedMissingRefs = new ArrayList<>();
+            for (Map.Entry<String, MissingReference> ref : before.entrySet()) {
+                if (!after.containsKey(ref.getKey()))
+                    resolvedMissingRefs.add(ref.getValue());
+            }
+        }
+
+        public String getProcFilename() {
+            return procFilename;
+        }
+
+        /**
+         * True when the file was deleted.
+         */
+        public boolean isRemoved() {
+            return removed;
+        }
+
+        public List<MissingReference> getAddedMissingRefs() {
+            return addedMissingRefs;
+        }
+
+        /**
+         * Missing references of the previous parse not found anymore, because the
+         * target was created, the link changed or the caller was deleted.
+         */
+        public List<MissingReference> getResolvedMissingRefs() {
+            return resolvedMissingRefs;
+        }
+
+        private static Map<String, MissingReference> missingRefsOf(ProcessMetadata m) {
+
+            if (m == null || m.getMissingRefs() == null)
+                return Collections.emptyMap();
+
+            Map<String, MissingReference> refs = new LinkedHashMap<>();
+            for (MissingReference ref : m.getMissingRefs()) {
+                refs.put(ref.getType() + '\u0000' + ref.getReferencingStepName() + '\u0000' + ref.getRefValue(), ref);
+            }
+            return refs;
+        }
+    }
+}
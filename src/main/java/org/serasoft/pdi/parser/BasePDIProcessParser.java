@@ -17,17 +17,28 @@ package org.serasoft.pdi.parser;
  */
 
 import org.serasoft.pdi.parser.model.*;
+import org.serasoft.pdi.parser.utils.ConnectionFingerprint;
+import org.serasoft.pdi.parser.utils.CountingStreamReader;
 import org.serasoft.pdi.parser.utils.MetadataPath;
+import org.serasoft.pdi.parser.utils.ProcessFileInput;
+import org.serasoft.pdi.parser.utils.VariableScope;
+import org.serasoft.pdi.parser.utils.XMLInputFactoryHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Class Name   : ParsePDIMetadata.java
@@ -44,16 +55,35 @@ public abstract class BasePDIProcessParser {
     protected File procFileRef;
     protected int depth;
     protected boolean followSymlinks;
+    protected ParserContext context;
+    // Canonical paths of the processes that led to this one, top level process first
+    protected LinkedHashSet<String> callChain;
+
+    private String procFileCanonicalPath;
+    // Links found while reading the file, checked and followed once it is closed
+    private List<PendingLink> pendingLinks;
+    // Reused by readElementText for the text of every element of the file
+    private char[] textBuffer = new char[256];
+    // Figures of the file being parsed, null unless the run collects parse metrics
+    private ParseMetrics.FileStats stats;
+    // Callers of this process that links below it lead back to, null if none
+    private Set<String> cycleTargets;
 
     public BasePDIProcessParser(File procFileRef, int depth, boolean followSymlinks) {
-        init(procFileRef, depth, followSymlinks);
+        this(procFileRef, depth, followSymlinks, new ParserContext());
     }
 
-    protected void init(File procFileRef, int depth, boolean followSymlinks) {
+    public BasePDIProcessParser(File procFileRef, int depth, boolean followSymlinks, ParserContext context) {
+        init(procFileRef, depth, followSymlinks, context);
+    }
+
+    protected void init(File procFileRef, int depth, boolean followSymlinks, ParserContext context) {
 
         this.procFileRef = procFileRef;
         this.depth = depth;
         this.followSymlinks = followSymlinks;
+        this.context = context;
+        this.callChain = new LinkedHashSet<>();
     }
 
     public abstract ProcessMetadata parse();
@@ -149,6 +179,7 @@ public abstract class BasePDIProcessParser {
 
     protected Connection parseConnection(XMLStreamReader xmlStreamReader, MetadataPath metadataPath) {
 
+        long start = startTimer();
         int eventType;
         boolean elementAnalyzed = false;
         String elementName;
@@ -167,7 +198,7 @@ public abstract class BasePDIProcessParser {
                         } else {
                             elementValue = readElementText(xmlStreamReader, metadataPath);
                             if (elementName.equals("name")) {
-                                retConn = new Connection(elementValue, procFileRef);
+                                retConn = new Connection(intern(elementValue), procFileRef);
                             } else {
                                 addConnectionPropertyToCollectedMetadata(retConn, elementName, elementValue);
                             }
@@ -188,6 +219,11 @@ public abstract class BasePDIProcessParser {
             e.printStackTrace();
         }
 
+        if (retConn != null)
+            // Computed by the worker threads, while the settings are at hand
+            retConn.setFingerprint(ConnectionFingerprint.of(retConn));
+
+        stopTimer(ParseMetrics.Section.CONNECTIONS, start);
         return retConn;
     }
 
@@ -264,10 +300,31 @@ public abstract class BasePDIProcessParser {
 
     }
 
-    protected String readElementText(XMLStreamReader xmlStreamReader, MetadataPath metadataPath) {
+    /**
+     * Skips the element whose START_ELEMENT was just read, up to and including its
+     * END_ELEMENT, and pops it from metadataPath. Only element nesting is tracked:
+     * no text or attribute of the skipped subtree is ever materialized.
+     */
+    protected void skipElement(XMLStreamReader xmlStreamReader, MetadataPath metadataPath) throws XMLStreamException {
+
+        int level = 1;
+        while (level > 0 && xmlStreamReader.hasNext()) {
+            switch (xmlStreamReader.next()) {
+                case XMLStreamReader.START_ELEMENT:
+                    level++;
+                    break;
+                case XMLStreamReader.END_ELEMENT:
+                    level--;
+                    break;
+            }
+        }
 
-        StringBuilder content = new StringBuilder();
+        metadataPath.pop();
+    }
 
+    protected String readElementText(XMLStreamReader xmlStreamReader, MetadataPath metadataPath) {
+
+        int length = 0;
         int eventType;
         boolean elementAnalyzed = false;
 
@@ -277,7 +334,13 @@ public abstract class BasePDIProcessParser {
                 switch (eventType) {
                     case XMLStreamReader.CHARACTERS:
                     case XMLStreamReader.CDATA:
-                        content.append(xmlStreamReader.getText());
+                        // Copied straight from the reader's own buffer, no intermediate String
+                        int textLength = xmlStreamReader.getTextLength();
+                        if (length + textLength > textBuffer.length)
+                            textBuffer = Arrays.copyOf(textBuffer, Math.max(textBuffer.length * 2, length + textLength));
+                        System.arraycopy(xmlStreamReader.getTextCharacters(), xmlStreamReader.getTextStart(),
+                                textBuffer, length, textLength);
+                        length += textLength;
                         break;
                     case XMLStreamReader.END_ELEMENT:
                         metadataPath.pop();
@@ -291,7 +354,316 @@ public abstract class BasePDIProcessParser {
             e.printStackTrace();
         }
 
-        return content.toString();
+        // Empty elements are common: <description/>, <extended_description/>, ...
+        return length == 0 ? "" : new String(textBuffer, 0, length);
+    }
+
+    /**
+     * Records the process linked by item. The filename is resolved, checked and,
+     * when links are followed, parsed by resolveLinks once the whole file has been
+     * read, so that the variables set anywhere in the file are known.
+     */
+    protected void linkProcess(ProcessItem item,
+                               String linkedProcFilename,
+                               ProcessTypeEnum linkedProcType,
+                               String missingRefType,
+                               ProcessMetadata processMetadata) {
+
+        if (pendingLinks == null)
+            // Lazy init pending links structure
+            pendingLinks = new ArrayList<>();
+
+        pendingLinks.add(new PendingLink(item, linkedProcFilename, linkedProcType, missingRefType));
+    }
+
+    /**
+     * Resolves what the items of the file refer to, once the whole file has been
+     * read: the shared connections they use and the processes they link.
+     */
+    protected void resolveReferences(ProcessMetadata processMetadata) {
+        resolveSharedConnections(processMetadata);
+
+        long start = startTimer();
+        resolveLinks(processMetadata);
+        stopTimer(ParseMetrics.Section.LINKS, start);
+    }
+
+    /**
+     * Adds to the connections of the process the shared connections its items use
+     * without the process defining them. Shared connections are looked up in the
+     * environment loaded once for the run.
+     */
+    protected void resolveSharedConnections(ProcessMetadata processMetadata) {
+
+        KettleEnvironment environment = context.getKettleEnvironment();
+        if (processMetadata.getItems() == null || environment.getSharedConnections().isEmpty()
+                || !context.getParsePlan().includes(ParsePlan.Section.CONNECTIONS))
+            return;
+
+        Set<String> definedConnections = new HashSet<>();
+        if (processMetadata.getConnections() != null) {
+            for (Connection conn : processMetadata.getConnections()) {
+                definedConnections.add(conn.getName());
+            }
+        }
+
+        for (ProcessItem item : processMetadata.getItems().values()) {
+            String connectionName = item.getConnectionName();
+            if (connectionName == null || definedConnections.contains(connectionName))
+                continue;
+
+            Connection shared = environment.getSharedConnection(connectionName);
+            if (shared != null) {
+                addConnectionToCollectedMetadata(shared, processMetadata);
+                definedConnections.add(connectionName);
+            }
+        }
+    }
+
+    /**
+     * Resolves the filenames of the links found in the file and checks them
+     * against the directory listings of the run, which costs one listing per
+     * directory instead of one file system call per link. Links to files that do
+     * not exist are collected as missing references, the others are parsed when
+     * links are followed.
+     */
+    protected void resolveLinks(ProcessMetadata processMetadata) {
+
+        if (pendingLinks == null)
+            return;
+
+        VariableResolver variables = context.getVariables();
+        VariableScope scope = processScope(processMetadata);
+        DirectoryListingCache listings = context.getDirectoryListings();
+
+        for (PendingLink link : pendingLinks) {
+            String linkedProcFilename = variables.resolve(link.linkedProcFilename, scope);
+            l.debug("Filename: " + linkedProcFilename);
+
+            if (hasVariables(linkedProcFilename)) {
+                // A variable without a value in any scope: the file cannot be looked for, keep the link as written
+                link.item.setLinkedProcFilename(linkedProcFilename);
+                l.debug("Link from " + procFileRef + " to " + linkedProcFilename + " not checked: unresolved variables");
+                continue;
+            }
+
+            // Normalized without going to the file system: relative to the canonical directory of the process
+            // this is the canonical path of the linked file, unless the link itself goes through a symlink
+            File linkedProcFile = new File(linkedProcFilename).getAbsoluteFile().toPath().normalize().toFile();
+            link.item.setLinkedProcFilename(linkedProcFile.getPath());
+
+            if (!listings.exists(linkedProcFile)) {
+                addMissingReferenceToCollectedMetadata(link.missingRefType,
+                        linkedProcFile.getPath(),
+                        link.item.getName(),
+                        processMetadata.getName(),
+                        procFileRef.getAbsolutePath(),
+                        processMetadata);
+            } else if (followSymlinks) {
+                link.item.setLinkedProcess(parseLinkedProcess(linkedProcFile,
+                        link.linkedProcType,
+                        processMetadata,
+                        link.item.getName()));
+            }
+        }
+
+        pendingLinks = null;
+    }
+
+    /**
+     * Variables visible from the items of the process, innermost first: the
+     * internal variables, the variables set by the process, the defaults of its
+     * parameters and the variables of the run, as kettle.properties. Empty values
+     * are left out, as a reference to them cannot be resolved statically.
+     */
+    protected VariableScope processScope(ProcessMetadata processMetadata) {
+
+        VariableScope scope = context.getVariables().getRootScope();
+
+        if (processMetadata.getParams() != null) {
+            Map<String, String> params = new HashMap<>();
+            for (Parameter param : processMetadata.getParams().values()) {
+                if (param.getDefaultValue() != null && !param.getDefaultValue().isEmpty())
+                    params.put(param.getName(), param.getDefaultValue());
+            }
+            scope = scope.with(params);
+        }
+
+        if (processMetadata.getVars() != null) {
+            Map<String, String> vars = new HashMap<>();
+            for (Variable var : processMetadata.getVars()) {
+                if (var.getValue() != null && !var.getValue().isEmpty())
+                    vars.put(var.getName(), var.getValue());
+            }
+            scope = scope.with(vars);
+        }
+
+        // Links are resolved from the canonical directory, so that they name files as the graph and the walker do
+        String procDirectory = new File(getProcFileCanonicalPath()).getParent();
+        Map<String, String> internalVars = new HashMap<>();
+        internalVars.put("Internal.Entry.Current.Directory", procDirectory);
+        internalVars.put("Internal.Job.Filename.Directory", procDirectory);
+        internalVars.put("Internal.Transformation.Filename.Directory", procDirectory);
+        if (processMetadata.getTypeEnum() == ProcessTypeEnum.JOB) {
+            internalVars.put("Internal.Job.Filename.Name", procFileRef.getName());
+            if (processMetadata.getName() != null)
+                internalVars.put("Internal.Job.Name", processMetadata.getName());
+        } else {
+            internalVars.put("Internal.Transformation.Filename.Name", procFileRef.getName());
+            if (processMetadata.getName() != null)
+                internalVars.put("Internal.Transformation.Name", processMetadata.getName());
+        }
+
+        return scope.with(internalVars);
+    }
+
+    private static boolean hasVariables(String filename) {
+        return filename.contains("${") || filename.contains("%%");
+    }
+
+    /**
+     * Parses the process linked by one of our items. Each linked file is parsed
+     * once per run and its metadata is shared by every item that links it.
+     * Links back to a process already in the call chain are collected as cyclic
+     * references, and links beyond the maximum depth are not followed; in both
+     * cases null is returned.
+     */
+    protected ProcessMetadata parseLinkedProcess(File linkedProcFile,
+                                                 ProcessTypeEnum linkedProcType,
+                                                 ProcessMetadata processMetadata,
+                                                 String callerStepName) {
+
+        String procPath = getProcFileCanonicalPath();
+        String linkedProcPath = canonicalPathOf(linkedProcFile);
+
+        if (linkedProcPath.equals(procPath) || callChain.contains(linkedProcPath)) {
+            addCyclicReferenceToCollectedMetadata(linkedProcPath, processMetadata, callerStepName);
+            processMetadata.setCycleCut(true);
+            if (!linkedProcPath.equals(procPath))
+                addCycleTarget(linkedProcPath);
+            return null;
+        }
+
+        if (depth + 1 > context.getMaxDepth()) {
+            l.warn("Link from " + procFileRef + " to " + linkedProcFile + " not followed: max depth of "
+                    + context.getMaxDepth() + " reached");
+            processMetadata.setTruncated(true);
+            return null;
+        }
+
+        ProcessMetadata pm = context.getParseCache().getOrParse(linkedProcFile, () -> {
+            BasePDIProcessParser linkedProcParser;
+            if (linkedProcType == ProcessTypeEnum.JOB)
+                linkedProcParser = new JobParser(linkedProcFile, depth + 1, followSymlinks, context);
+            else
+                linkedProcParser = new TransformationParser(linkedProcFile, depth + 1, followSymlinks, context);
+
+            linkedProcParser.callChain.addAll(callChain);
+            linkedProcParser.callChain.add(procPath);
+
+            ProcessMetadata linkedProcMetadata = linkedProcParser.parse(processMetadata.getName(), procFileRef, callerStepName);
+
+            // Cycles closed on this process are complete here, those closed on its callers are not
+            if (linkedProcParser.cycleTargets != null) {
+                for (String cycleTarget : linkedProcParser.cycleTargets) {
+                    if (!cycleTarget.equals(procPath)) {
+                        processMetadata.setCycleCut(true);
+                        addCycleTarget(cycleTarget);
+                    }
+                }
+            }
+
+            return linkedProcMetadata;
+        });
+
+        if (pm != null && pm.isTruncated())
+            processMetadata.setTruncated(true);
+
+        return pm;
+    }
+
+    private void addCycleTarget(String callerPath) {
+        if (cycleTargets == null)
+            cycleTargets = new HashSet<>();
+
+        cycleTargets.add(callerPath);
+    }
+
+    protected String getProcFileCanonicalPath() {
+        if (procFileCanonicalPath == null)
+            procFileCanonicalPath = canonicalPathOf(procFileRef);
+
+        return procFileCanonicalPath;
+    }
+
+    protected static String canonicalPathOf(File f) {
+        try {
+            return f.getCanonicalPath();
+        } catch (IOException e) {
+            return f.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Starts measuring the parse of the file, when the run collects parse metrics.
+     */
+    protected void startMetrics() {
+        if (context.getMetrics() != null)
+            stats = context.getMetrics().start(getProcFileCanonicalPath());
+    }
+
+    /**
+     * Hands the figures of the file to the run, once its links are resolved.
+     */
+    protected void recordMetrics() {
+        if (stats != null) {
+            context.getMetrics().record(stats);
+            stats = null;
+        }
+    }
+
+    protected long startTimer() {
+        return stats != null ? System.nanoTime() : 0;
+    }
+
+    protected void stopTimer(ParseMetrics.Section section, long start) {
+        if (stats != null)
+            stats.addSectionTime(section, System.nanoTime() - start);
+    }
+
+    /**
+     * Creates the StAX reader of the file. Its events are counted only when the
+     * parse is measured; the bytes read are taken when the file is closed.
+     */
+    protected XMLStreamReader openReader(ProcessFileInput procFileStream) throws XMLStreamException {
+
+        XMLStreamReader xmlStreamReader = XMLInputFactoryHolder.createXMLStreamReader(procFileStream);
+        if (stats == null)
+            return xmlStreamReader;
+
+        return new CountingStreamReader(xmlStreamReader);
+    }
+
+    protected void closeProcFile(XMLStreamReader xmlStreamReader, InputStream procFileStream) {
+
+        if (stats != null && xmlStreamReader instanceof CountingStreamReader)
+            stats.setEvents(((CountingStreamReader) xmlStreamReader).getEvents());
+        if (stats != null && procFileStream instanceof ProcessFileInput)
+            stats.setBytes(((ProcessFileInput) procFileStream).getBytesRead());
+
+        try {
+            if (xmlStreamReader != null)
+                xmlStreamReader.close();
+        } catch (XMLStreamException e) {
+            l.warn("Unable to close XML reader for " + procFileRef + ": " + e.getMessage());
+        }
+
+        try {
+            if (procFileStream != null)
+                procFileStream.close();
+        } catch (IOException e) {
+            l.warn("Unable to close " + procFileRef + ": " + e.getMessage());
+        }
     }
 
     public void outputObjectContent() {
@@ -311,6 +683,56 @@ public abstract class BasePDIProcessParser {
         }
     }
 
+    protected void addMissingReferenceToCollectedMetadata(String type,
+                                                          String missingProcPath,
+                                                          String callerStepName,
+                                                          String callerProcName,
+                                                          String callerProcFilename,
+                                                          ProcessMetadata processMetadata) {
+
+        MissingReference missingRef = new MissingReference(callerStepName, callerProcName, callerProcFilename);
+        missingRef.setType(type);
+        missingRef.setRefValue(missingProcPath);
+
+        if (processMetadata.getMissingRefs() == null)
+            // Lazy init missing references structure
+            processMetadata.setMissingRefs(new ArrayList<>());
+
+        processMetadata.getMissingRefs().add(missingRef);
+        l.debug("File " + missingProcPath + " was not found"
+                + (callerProcFilename != null ? "\n| Caller Filename: " + callerProcFilename : "")
+                + (callerStepName != null ? "\n| Caller Step: " + callerStepName : ""));
+    }
+
+    protected void addCyclicReferenceToCollectedMetadata(String linkedProcPath,
+                                                         ProcessMetadata processMetadata,
+                                                         String callerStepName) {
+
+        List<String> cycle = new ArrayList<>();
+        boolean inCycle = false;
+        for (String callerPath : callChain) {
+            if (callerPath.equals(linkedProcPath))
+                inCycle = true;
+            if (inCycle)
+                cycle.add(callerPath);
+        }
+        cycle.add(getProcFileCanonicalPath());
+        cycle.add(linkedProcPath);
+
+        CyclicReference cyclicRef = new CyclicReference(callerStepName,
+                processMetadata.getName(),
+                procFileRef.getAbsolutePath());
+        cyclicRef.setRefValue(linkedProcPath);
+        cyclicRef.setCycle(cycle);
+
+        if (processMetadata.getCyclicRefs() == null)
+            // Lazy init cyclic references structure
+            processMetadata.setCyclicRefs(new ArrayList<>());
+
+        processMetadata.getCyclicRefs().add(cyclicRef);
+        l.warn("Cyclic reference from " + procFileRef + " to " + linkedProcPath + ": " + String.join(" -> ", cycle));
+    }
+
     protected void addVariableToCollectedMetadata(Variable var, ProcessMetadata processMetadata) {
         if (var != null) {
             if (processMetadata.getVars() == null)
@@ -353,6 +775,13 @@ public abstract class BasePDIProcessParser {
         }
     }
 
+    /**
+     * Returns the run wide instance of a value that repeats across files.
+     */
+    protected String intern(String value) {
+        return context.getStringPool().intern(value);
+    }
+
     protected void addConnectionPropertyToCollectedMetadata(Connection c, String name, String value) {
 
         if (name == null) {
@@ -364,7 +793,7 @@ public abstract class BasePDIProcessParser {
                 // Lazy init connection properties structure
                 c.setProperties(new HashMap<>());
 
-            c.getProperties().put(name, value);
+            c.getProperties().put(name, intern(value));
         } else {
             // TODO Throws exception in case connection property is null
         }
@@ -381,9 +810,25 @@ public abstract class BasePDIProcessParser {
                 // Lazy init parameters structure
                 c.setJdbcAttributes(new HashMap<>());
 
-            c.getJdbcAttributes().put(name, value);
+            c.getJdbcAttributes().put(intern(name), intern(value));
         } else {
             // TODO Throws exception in case JDBC attribute is null
         }
     }
+
+    private static class PendingLink {
+
+        final ProcessItem item;
+        // As written in the file, variables included
+        final String linkedProcFilename;
+        final ProcessTypeEnum linkedProcType;
+        final String missingRefType;
+
+        PendingLink(ProcessItem item, String linkedProcFilename, ProcessTypeEnum linkedProcType, String missingRefType) {
+            this.item = item;
+            this.linkedProcFilename = linkedProcFilename;
+            this.linkedProcType = linkedProcType;
+            this.missingRefType = missingRefType;
+        }
+    }
 }
@@ -0,0 +1,192 @@
+package org.serasoft.pdi.parser;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class Name   : DirectoryListingCache.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Names of the process files of the directories seen during a
+ * run, used to tell whether a linked file exists without going to the file
+ * system for each link. A directory is listed once, the first time a file in
+ * it is looked for, unless the walker already handed over its listing, and
+ * the listing is trusted until it is invalidated. Only job and transformation
+ * names are kept, for the most recently used directories, so memory does not
+ * grow with the size of the repository.
+ */
+public class DirectoryListingCache {
+
+    public static final int DEFAULT_MAX_DIRECTORIES = 4096;
+
+    private static final String EXT_PDI_JOB = ".kjb";
+    private static final String EXT_PDI_TRANSFORMATION = ".ktr";
+
+    private final int maxDirectories;
+    private final Map<String, Listing> listings;
+    private final AtomicLong listed = new AtomicLong();
+
+    public DirectoryListingCache() {
+        this(DEFAULT_MAX_DIRECTORIES);
+    }
+
+    public DirectoryListingCache(int maxDirectories) {
+        this.maxDirectories = maxDirectories;
+        // Access ordered, so that the eldest entry is the least recently used one
+        this.listings = Collections.synchronizedMap(new LinkedHashMap<String, Listing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+                return size() > DirectoryListingCache.this.maxDirectories;
+            }
+        });
+    }
+
+    /**
+     * Records the entries of dir as read by someone else, typically the walker.
+     */
+    public void addListing(File dir, Collection<String> names) {
+        listings.put(dir.getPath(), Listing.of(dir, names));
+    }
+
+    /**
+     * Records the entries of dir, telling whether its file system ignores case.
+     */
+    void addListing(File dir, Collection<String> names, boolean ignoreCase) {
+        listings.put(dir.getPath(), new Listing(names, ignoreCase));
+    }
+
+    /**
+     * Tells whether f exists. Listings are keyed by the directory path as given:
+     * the walker gives canonical directories, and links resolved from the
+     * canonical directory of their process fall in the same listings. Names
+     * other than jobs and transformations are checked on the file system.
+     */
+    public boolean exists(File f) {
+
+        File dir = f.getParentFile();
+        if (dir == null || !isProcessFile(f.getName()))
+            return f.exists();
+
+        Listing listing = listings.get(dir.getPath());
+        if (listing == null) {
+            // Listed outside the lock: two workers may list the same directory at once
+            listing = list(dir);
+            listings.put(dir.getPath(), listing);
+        }
+
+        return listing.contains(f.getName());
+    }
+
+    /**
+     * Forgets the listing of dir, to be read again on the next lookup.
+     */
+    public void invalidate(File dir) {
+        listings.remove(dir.getPath());
+    }
+
+    /**
+     * Number of directories listed by the cache itself.
+     */
+    public long getListed() {
+        return listed.get();
+    }
+
+    public int size() {
+        return listings.size();
+    }
+
+    private Listing list(File dir) {
+
+        listed.incrementAndGet();
+        String[] names = dir.list();
+        // A missing or unreadable directory contains nothing we can open
+        return names != null ? Listing.of(dir, Arrays.asList(names)) : Listing.EMPTY;
+    }
+
+    private static boolean isProcessFile(String name) {
+        return name.endsWith(EXT_PDI_JOB) || name.endsWith(EXT_PDI_TRANSFORMATION);
+    }
+
+    /**
+     * Process file names of a directory, folded to lower case when its file
+     * system ignores case, as a link spelled with another case opens the file
+     * all the same there.
+     */
+    private static final class Listing {
+
+        static final Listing EMPTY = new Listing(Collections.<String>emptyList(), false);
+
+        private final Set<String> names;
+        private final boolean ignoreCase;
+
+        Listing(Collection<String> names, boolean ignoreCase) {
+
+            Set<String> processFiles = new HashSet<>();
+            for (String name : names) {
+                if (isProcessFile(name))
+                    processFiles.add(ignoreCase ? name.toLowerCase(Locale.ROOT) : name);
+            }
+            this.names = processFiles.isEmpty() ? Collections.<String>emptySet() : processFiles;
+            this.ignoreCase = ignoreCase;
+        }
+
+        /**
+         * Lists names, probing the file system of dir once, with one of the names
+         * spelled in the other case, to know whether it ignores case.
+         */
+        static Listing of(File dir, Collection<String> names) {
+
+            for (String name : names) {
+                if (!isProcessFile(name))
+                    continue;
+
+                String swapped = swapCase(name);
+                if (!swapped.equals(name) && !names.contains(swapped))
+                    return new Listing(names, new File(dir, swapped).exists());
+            }
+
+            // No process file: nothing can match, whatever the case rules
+            return new Listing(names, false);
+        }
+
+        boolean contains(String name) {
+            return names.contains(ignoreCase ? name.toLowerCase(Locale.ROOT) : name);
+        }
+
+        private static String swapCase(String name) {
+
+            char[] chars = name.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = Character.isUpperCase(chars[i]) ? Character.toLowerCase(chars[i]) : Character.toUpperCase(chars[i]);
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -19,16 +19,14 @@ package org.serasoft.pdi.parser;
 
 import org.serasoft.pdi.parser.model.*;
 import org.serasoft.pdi.parser.utils.MetadataPath;
-import org.serasoft.pdi.parser.utils.ResolvePDIInternalVariables;
+import org.serasoft.pdi.parser.utils.ProcessFileInput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -47,30 +45,80 @@ public class JobParser extends org.serasoft.pdi.parser.BasePDIProcessParser {
 
     private Logger l = LoggerFactory.getLogger(JobParser.class);
 
+    // Entry types whose <filename> is the process they run
+    private static final Map<String, ProcessTypeEnum> LINKING_ENTRY_TYPES = new HashMap<>();
+
+    static {
+        LINKING_ENTRY_TYPES.put("JOB", ProcessTypeEnum.JOB);
+        LINKING_ENTRY_TYPES.put("TRANS", ProcessTypeEnum.TRANSFORMATION);
+    }
+
+    private static final MetadataPath.Pattern JOB_ENTRIES = MetadataPath.compile("/job/entries");
+    private static final MetadataPath.Pattern JOB_HOPS = MetadataPath.compile("/job/hops");
+    private static final MetadataPath.Pattern JOB_NAME = MetadataPath.compile("/job/name");
+    private static final MetadataPath.Pattern JOB_DESCRIPTION = MetadataPath.compile("/job/description");
+    private static final MetadataPath.Pattern JOB_EXTENDED_DESCRIPTION = MetadataPath.compile("/job/extended_description");
+    private static final MetadataPath.Pattern JOB_PARAMETERS = MetadataPath.compile("/job/parameters");
+    private static final MetadataPath.Pattern JOB_CONNECTION = MetadataPath.compile("/job/connection");
+    private static final MetadataPath.Pattern JOB_SLAVESERVERS = MetadataPath.compile("/job/slaveservers");
+
+    // Top level sections in the order PDI writes them, used to stop reading once the plan is satisfied
+    private static final int SECTION_HEADER = 0;
+    private static final int SECTION_CONNECTIONS = 1;
+    private static final int SECTION_ENTRIES = 2;
+    private static final int SECTION_HOPS = 3;
+
     public JobParser(File jobFile, int depth, boolean followSymlinks) {
         super(jobFile, depth, followSymlinks);
     }
 
+    public JobParser(File jobFile, int depth, boolean followSymlinks, ParserContext context) {
+        super(jobFile, depth, followSymlinks, context);
+    }
+
     public ProcessMetadata parse() {
         return parse(null, null, null);
     }
 
     public ProcessMetadata parse(String parentPDIProcName, File parentprocFileRef, String callerStepName) {
+        return parse(context.getParsePlan(), parentPDIProcName, parentprocFileRef, callerStepName);
+    }
+
+    /**
+     * Reads name, descriptions, parameters and connections only, and stops
+     * before the entries. The returned metadata is marked as partial.
+     */
+    public ProcessMetadata parseHeader() {
+        return parse(ParsePlan.HEADER, null, null, null);
+    }
+
+    private ProcessMetadata parse(ParsePlan plan,
+                                  String parentPDIProcName,
+                                  File parentprocFileRef,
+                                  String callerStepName) {
 
         Map<String, ProcessItem> items = new HashMap<>();
         ProcessMetadata processMetadata = new ProcessMetadata();
+        ProcessFileInput procFileStream = null;
+        XMLStreamReader xmlStreamReader = null;
+        startMetrics();
 
         try {
             MetadataPath metadataPath = new MetadataPath();
 
-            XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(new FileInputStream(procFileRef));
+            procFileStream = ProcessFileInput.open(procFileRef);
+            xmlStreamReader = openReader(procFileStream);
             String elementName;
             int eventType;
+            int lastSection = lastSectionOf(plan);
+            boolean planCompleted = false;
 
             // Set process type in collected information' structure
             processMetadata.setTypeEnum(ProcessTypeEnum.JOB);
+            processMetadata.setProcFilename(getProcFileCanonicalPath());
+            processMetadata.setPartial(!plan.equals(ParsePlan.ALL));
 
-            while (xmlStreamReader.hasNext()) {
+            while (!planCompleted && xmlStreamReader.hasNext()) {
 
                 eventType = xmlStreamReader.next();
                 switch (eventType) {
@@ -78,11 +126,15 @@ public class JobParser extends org.serasoft.pdi.parser.BasePDIProcessParser {
                         elementName = xmlStreamReader.getLocalName();
                         metadataPath.push(elementName);
 
-                        if (metadataPath.path().equals("/job/entries")) {
+                        if (metadataPath.depth() == 2 && sectionOf(metadataPath) > lastSection) {
+                            planCompleted = true;
+                        } else if (metadataPath.matches(JOB_ENTRIES) && plan.includes(ParsePlan.Section.ITEMS)) {
+                            long start = startTimer();
                             parseEntries(xmlStreamReader, metadataPath, processMetadata);
-                        } else if (metadataPath.path().equals("/job/hops")) {
+                            stopTimer(ParseMetrics.Section.ENTRIES, start);
+                        } else if (metadataPath.matches(JOB_HOPS) && plan.includes(ParsePlan.Section.HOPS)) {
                             parseHops(xmlStreamReader, metadataPath, processMetadata);
-                        } else if (metadataPath.path().equals("/job/name")) {
+                        } else if (metadataPath.matches(JOB_NAME)) {
                             processMetadata.setName(readElementText(xmlStreamReader, metadataPath));
                             System.out.println("Analyzing job metadata - File: " + processMetadata.getName()
                                     + "\n| Filename: " + procFileRef.getName()
@@ -90,15 +142,23 @@ public class JobParser extends org.serasoft.pdi.parser.BasePDIProcessParser {
                                     + (parentPDIProcName != null ? "\n| Caller: " + parentPDIProcName : "")
                                     + (parentprocFileRef != null ? "\n| Caller Filename: " + parentprocFileRef.getName() : "")
                                     + (callerStepName != null ? "\n| Caller Step: " + callerStepName : ""));
-                        } else if (metadataPath.path().equals("/job/description")) {
+                        } else if (metadataPath.matches(JOB_DESCRIPTION)) {
                             processMetadata.setDescription(readElementText(xmlStreamReader, metadataPath));
-                        } else if (metadataPath.path().equals("/job/extended_description")) {
+                        } else if (metadataPath.matches(JOB_EXTENDED_DESCRIPTION)) {
                             processMetadata.setExtendedDescription(readElementText(xmlStreamReader, metadataPath));
-                        } else if (metadataPath.path().equals("/job/parameters")) {
-                            parseParameters(xmlStreamReader, metadataPath, processMetadata);
-                        } else if (metadataPath.path().equals("/job/connection")) {
+                        } else if (metadataPath.matches(JOB_PARAMETERS)) {
+                            if (plan.includes(ParsePlan.Section.PARAMETERS))
+                                parseParameters(xmlStreamReader, metadataPath, processMetadata);
+                            else
+                                skipElement(xmlStreamReader, metadataPath);
+                            // Parameters close the header
+                            planCompleted = lastSection == SECTION_HEADER;
+                        } else if (metadataPath.matches(JOB_CONNECTION) && plan.includes(ParsePlan.Section.CONNECTIONS)) {
                             Connection conn = parseConnection(xmlStreamReader, metadataPath);
                             addConnectionToCollectedMetadata(conn, processMetadata);
+                        } else if (metadataPath.depth() > 1) {
+                            // Log tables, slave servers, notepads, attributes and so on: nothing to collect
+                            skipElement(xmlStreamReader, metadataPath);
                         }
                         break;
 
@@ -114,36 +174,55 @@ public class JobParser extends org.serasoft.pdi.parser.BasePDIProcessParser {
             }
 
         } catch (FileNotFoundException e1) {
-
-            MissingReference missingRef = new MissingReference(callerStepName,
+            addMissingReferenceToCollectedMetadata(MissingReference.TYPE_JOB_FILE,
+                    getProcFileCanonicalPath(),
+                    callerStepName,
                     parentPDIProcName,
-                    parentprocFileRef.getAbsolutePath());
-            missingRef.setType("JobFileRef");
-            missingRef.setRefValue(procFileRef.getAbsoluteFile().getName());
-
-            List<MissingReference> collectedMissingRefs = processMetadata.getMissingRefs();
-
-            if (collectedMissingRefs == null) {
-                collectedMissingRefs = new ArrayList<>();
-            }
-
-            collectedMissingRefs.add(missingRef);
-            processMetadata.setMissingRefs(collectedMissingRefs);
-/*
-            l.error("| WARNING - File " + procFileRef + " was not found as expected by PDI analyzer. Please check!"
-                    + (parentPDIProcName != null ? "\n| | Caller: " + parentPDIProcName : "")
-                    + (parentprocFileRef != null ? "\n| | Caller Filename: " + parentprocFileRef.getName() : "")
-                    + (callerStepName != null ? "\n| | Caller Step: " + callerStepName : ""));
-*/
+                    parentprocFileRef != null ? parentprocFileRef.getAbsolutePath() : null,
+                    processMetadata);
         } catch (XMLStreamException e2) {
             l.error(e2.getLocalizedMessage());
         } catch (Exception e) {
             l.error(e.getMessage());
+        } finally {
+            closeProcFile(xmlStreamReader, procFileStream);
         }
 
+        // The file is closed before following its links
+        resolveReferences(processMetadata);
+        recordMetrics();
+
         return processMetadata;
     }
 
+    private static int lastSectionOf(ParsePlan plan) {
+
+        if (plan.includes(ParsePlan.Section.HOPS))
+            return SECTION_HOPS;
+        else if (plan.includes(ParsePlan.Section.ITEMS))
+            return SECTION_ENTRIES;
+        else if (plan.includes(ParsePlan.Section.CONNECTIONS))
+            return SECTION_CONNECTIONS;
+
+        return SECTION_HEADER;
+    }
+
+    private static int sectionOf(MetadataPath metadataPath) {
+
+        if (metadataPath.matches(JOB_HOPS))
+            return SECTION_HOPS;
+        else if (metadataPath.matches(JOB_ENTRIES))
+            return SECTION_ENTRIES;
+        else if (metadataPath.matches(JOB_CONNECTION))
+            return SECTION_CONNECTIONS;
+        else if (metadataPath.matches(JOB_SLAVESERVERS))
+            // Slave servers and log tables are written right after the connections, so the header is over
+            return SECTION_ENTRIES;
+
+        // Header elements and sections that are never collected do not move the parse forward
+        return -1;
+    }
+
     private void parseHops(XMLStreamReader xmlStreamReader,
                            MetadataPath metadataPath,
                            ProcessMetadata processMetadata) {
@@ -200,9 +279,9 @@ public class JobParser extends org.serasoft.pdi.parser.BasePDIProcessParser {
                         metadataPath.push(elementName);
 
                         if (elementName.equals("from")) {
-                            from = readElementText(xmlStreamReader, metadataPath);
+                            from = intern(readElementText(xmlStreamReader, metadataPath));
                         } else if (elementName.equals("to")) {
-                            to = readElementText(xmlStreamReader, metadataPath);
+                            to = intern(readElementText(xmlStreamReader, metadataPath));
                         }
                         break;
                     case XMLStreamReader.END_ELEMENT:
@@ -239,7 +318,7 @@ public class JobParser extends org.serasoft.pdi.parser.BasePDIProcessParser {
                         elementName = xmlStreamReader.getLocalName();
                         metadataPath.push(elementName);
                         if (elementName.equals("entry")) {
-                            ProcessItem item = parseEntry(xmlStreamReader, metadataPath, processMetadata.getName());
+                            ProcessItem item = parseEntry(xmlStreamReader, metadataPath, processMetadata);
                             if (processMetadata.getItems() == null)
                                 processMetadata.setItems(new HashMap<>());
                             processMetadata.getItems().put(item.getName(), item);
@@ -262,7 +341,7 @@ public class JobParser extends org.serasoft.pdi.parser.BasePDIProcessParser {
 
     private ProcessItem parseEntry(XMLStreamReader xmlStreamReader,
                                    MetadataPath metadataPath,
-                                   String procName) {
+                                   ProcessMetadata processMetadata) {
 
         boolean elementAnalyzed = false;
         String elementName;
@@ -281,9 +360,9 @@ public class JobParser extends org.serasoft.pdi.parser.BasePDIProcessParser {
                         elementName = xmlStreamReader.getLocalName();
                         metadataPath.push(elementName);
                         if (elementName.equals("name")) {
-                            entryName = readElementText(xmlStreamReader, metadataPath);
+                            entryName = intern(readElementText(xmlStreamReader, metadataPath));
                         } else if (elementName.equals("type")) {
-                            itemClass = readElementText(xmlStreamReader, metadataPath);
+                            itemClass = intern(readElementText(xmlStreamReader, metadataPath));
                             item = new ProcessItem(ProcessItemTypeEnum.TASK,
                                     itemClass,
                                     entryName);
@@ -292,22 +371,26 @@ public class JobParser extends org.serasoft.pdi.parser.BasePDIProcessParser {
                             entryDescription = readElementText(xmlStreamReader, metadataPath);
                         } else if (elementName.equals("filename")) {
                             procFileRefname = readElementText(xmlStreamReader, metadataPath);
-
-                            if (procFileRefname != null) {
-
-                                procFileRefname = ResolvePDIInternalVariables.resolve(procFileRefname, procFileRef.getParent());
-                                l.debug("Filename: " + procFileRefname);
-                                ProcessMetadata pm = null;
-
-                                if (followSymlinks && itemClass.equals("JOB")) {
-                                    JobParser parseJob = new JobParser(new File(procFileRefname), depth + 1, followSymlinks);
-                                    pm = parseJob.parse(procName, procFileRef, entryName);
-                                } else if (followSymlinks && itemClass.equals("TRANS")) {
-                                    TransformationParser parseTrans = new TransformationParser(new File(procFileRefname), depth + 1, followSymlinks);
-                                    pm = parseTrans.parse(procName, procFileRef, entryName);
-                                }
-                                item.setLinkedProcess(pm);
+                            ProcessTypeEnum linkedProcType = itemClass != null ? LINKING_ENTRY_TYPES.get(itemClass) : null;
+
+                            if (linkedProcType != null && !procFileRefname.isEmpty()) {
+                                linkProcess(item,
+                                        procFileRefname,
+                                        linkedProcType,
+                                        linkedProcType == ProcessTypeEnum.JOB
+                                                ? MissingReference.TYPE_JOB_FILE
+                                                : MissingReference.TYPE_TRANS_FILE,
+                                        processMetadata);
                             }
+                        } else if (elementName.equals("connection") && item != null) {
+                            String connectionName = readElementText(xmlStreamReader, metadataPath);
+                            if (!connectionName.isEmpty())
+                                item.setConnectionName(intern(connectionName));
+                        } else if (elementName.equals("fields") && "SET_VARIABLES".equals(itemClass)) {
+                            parseVariables(entryName, xmlStreamReader, metadataPath, processMetadata);
+                        } else {
+                            // Entry specific settings, arguments, parameters and GUI coordinates
+                            skipElement(xmlStreamReader, metadataPath);
                         }
                         break;
                     case XMLStreamReader.END_ELEMENT:
@@ -325,4 +408,46 @@ public class JobParser extends org.serasoft.pdi.parser.BasePDIProcessParser {
         return item;
     }
 
+    private void parseVariables(String entryName,
+                                XMLStreamReader xmlStreamReader,
+                                MetadataPath metadataPath,
+                                ProcessMetadata processMetadata) {
+
+        int eventType;
+        boolean elementAnalyzed = false;
+        String elementName;
+        Variable var = null;
+
+        try {
+            while (xmlStreamReader.hasNext() && !elementAnalyzed) {
+                eventType = xmlStreamReader.next();
+                switch (eventType) {
+                    case XMLStreamReader.START_ELEMENT:
+                        elementName = xmlStreamReader.getLocalName();
+                        metadataPath.push(elementName);
+                        if (elementName.equals("variable_name")) {
+                            var = new Variable(entryName, readElementText(xmlStreamReader, metadataPath));
+                        } else if (elementName.equals("variable_value")) {
+                            assert var != null;
+                            var.setValue(readElementText(xmlStreamReader, metadataPath));
+                        } else if (elementName.equals("variable_type")) {
+                            assert var != null;
+                            var.setScope(readElementText(xmlStreamReader, metadataPath));
+                        }
+                        break;
+                    case XMLStreamReader.END_ELEMENT:
+                        elementName = xmlStreamReader.getLocalName();
+                        metadataPath.pop();
+                        if (elementName.equals("fields"))
+                            elementAnalyzed = true;
+                        else if (elementName.equals("field"))
+                            addVariableToCollectedMetadata(var, processMetadata);
+                        break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            e.printStackTrace();
+        }
+    }
+
 }
@@ -0,0 +1,186 @@
+package org.serasoft.pdi.parser;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.Connection;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.utils.ConnectionFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Class Name   : KettleEnvironment.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : The variables of kettle.properties and the connections of
+ * shared.xml of a PDI installation. Both files are read once, when the
+ * environment is loaded, and never change afterwards, so one instance is
+ * shared by all the parsers of a run whatever the number of threads.
+ */
+public final class KettleEnvironment {
+
+    private static Logger l = LoggerFactory.getLogger(KettleEnvironment.class);
+
+    public static final String KETTLE_PROPERTIES = "kettle.properties";
+    public static final String SHARED_XML = "shared.xml";
+
+    public static final KettleEnvironment EMPTY = new KettleEnvironment(Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<String, String> variables;
+    private final Map<String, Connection> sharedConnections;
+
+    private KettleEnvironment(Map<String, String> variables, Map<String, Connection> sharedConnections) {
+        this.variables = variables;
+        this.sharedConnections = sharedConnections;
+    }
+
+    /**
+     * Loads kettle.properties and shared.xml from the .kettle directory of
+     * kettleHome, or from kettleHome itself when it has no .kettle directory.
+     * sharedXml, when not null, is read instead of the shared.xml of kettleHome.
+     * Either argument may be null, and missing files are skipped.
+     */
+    public static KettleEnvironment load(File kettleHome, File sharedXml) throws IOException {
+
+        File kettleDir = null;
+        if (kettleHome != null)
+            kettleDir = new File(kettleHome, ".kettle").isDirectory() ? new File(kettleHome, ".kettle") : kettleHome;
+
+        Map<String, String> variables = Collections.emptyMap();
+        if (kettleDir != null) {
+            File kettleProperties = new File(kettleDir, KETTLE_PROPERTIES);
+            if (kettleProperties.isFile())
+                variables = loadVariables(kettleProperties);
+            else
+                l.warn("File " + kettleProperties + " not found, no variables loaded");
+        }
+
+        if (sharedXml == null && kettleDir != null)
+            sharedXml = new File(kettleDir, SHARED_XML);
+
+        Map<String, Connection> sharedConnections = Collections.emptyMap();
+        if (sharedXml != null) {
+            if (sharedXml.isFile())
+                sharedConnections = loadConnections(sharedXml);
+            else
+                l.warn("File " + sharedXml + " not found, no shared connections loaded");
+        }
+
+        return new KettleEnvironment(variables, sharedConnections);
+    }
+
+    /**
+     * Variables of kettle.properties, by name.
+     */
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Connections of shared.xml, by name.
+     */
+    public Map<String, Connection> getSharedConnections() {
+        return sharedConnections;
+    }
+
+    public Connection getSharedConnection(String name) {
+        return sharedConnections.get(name);
+    }
+
+    /**
+     * SHA-256 of every variable and of the name and fingerprint of every shared
+     * connection, in hex. Two environments only get the same fingerprint when
+     * they resolve links and shared connections the same way, and no value can be
+     * read back from it, so it can be written next to the analysis results.
+     */
+    public String getFingerprint() {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform implements SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        for (Map.Entry<String, String> variable : new TreeMap<>(variables).entrySet()) {
+            update(digest, "var:" + variable.getKey() + "=" + variable.getValue());
+        }
+        for (Map.Entry<String, Connection> connection : new TreeMap<>(sharedConnections).entrySet()) {
+            update(digest, "conn:" + connection.getKey() + "="
+                    + ConnectionFingerprint.toHex(connection.getValue().getFingerprint()));
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void update(MessageDigest digest, String entry) {
+        digest.update(entry.getBytes(StandardCharsets.UTF_8));
+        // Keeps an entry from running into the next one
+        digest.update((byte) 0);
+    }
+
+    private static Map<String, String> loadVariables(File kettleProperties) throws IOException {
+
+        Properties properties = new Properties();
+        // Read as PDI does, ISO-8859-1 with escapes
+        try (InputStream in = Files.newInputStream(kettleProperties.toPath())) {
+            properties.load(in);
+        }
+
+        Map<String, String> variables = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            variables.put(name, properties.getProperty(name));
+        }
+
+        return Collections.unmodifiableMap(variables);
+    }
+
+    private static Map<String, Connection> loadConnections(File sharedXml) {
+
+        ProcessMetadata shared = new SharedObjectsParser(sharedXml).parse();
+
+        Map<String, Connection> connections = new HashMap<>();
+        if (shared.getConnections() != null) {
+            for (Connection conn : shared.getConnections()) {
+                connections.put(conn.getName(), conn);
+            }
+        }
+
+        return Collections.unmodifiableMap(connections);
+    }
+}
@@ -0,0 +1,194 @@
+package org.serasoft.pdi.parser;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Class Name   : ParseCache.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : LRU cache of the metadata collected for each PDI file during an
+ * analysis run. There is one entry per canonical path, holding the file's last
+ * modification time and size when it was parsed, so a file that changes is
+ * parsed again and its stale entry replaced.
+ * Only completed parses are stored: two workers missing on the same file at the
+ * same time may both parse it, but no worker ever waits on another one.
+ * Results cut short by the link depth limit or by a cycle are not stored
+ * either, as they depend on where the file was reached from.
+ */
+public class ParseCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final int maxSize;
+    private final LinkedHashMap<String, CachedParse> entries;
+
+    private long hits;
+    private long misses;
+
+    public ParseCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ParseCache(int maxSize) {
+        this.maxSize = maxSize;
+        // Access ordered, so that the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<String, CachedParse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedParse> eldest) {
+                return size() > ParseCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached metadata for procFile or, on a miss, the metadata returned
+     * by parser, which is cached before being returned. Files that cannot be found,
+     * truncated results and results cut by a cycle are never cached.
+     */
+    public ProcessMetadata getOrParse(File procFile, Supplier<ProcessMetadata> parser) {
+
+        Key key = maxSize > 0 ? Key.of(procFile) : null;
+        if (key == null)
+            return parser.get();
+
+        ProcessMetadata m = get(key);
+        if (m == null) {
+            m = parser.get();
+            if (m != null && !m.isTruncated() && !m.isCycleCut())
+                put(key, m);
+        }
+
+        return m;
+    }
+
+    public synchronized ProcessMetadata get(Key key) {
+
+        CachedParse entry = entries.get(key.canonicalPath);
+        if (entry != null && entry.key.equals(key)) {
+            hits++;
+            return entry.metadata;
+        }
+
+        // The file changed since it was cached
+        if (entry != null)
+            entries.remove(key.canonicalPath);
+        misses++;
+
+        return null;
+    }
+
+    public synchronized void put(Key key, ProcessMetadata m) {
+        entries.put(key.canonicalPath, new CachedParse(key, m));
+    }
+
+    /**
+     * Drops the entry of the file with the given canonical path. Needed when the
+     * file itself did not change but the processes it links to did.
+     */
+    public synchronized void invalidate(String canonicalPath) {
+        entries.remove(canonicalPath);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static final class CachedParse {
+
+        private final Key key;
+        private final ProcessMetadata metadata;
+
+        CachedParse(Key key, ProcessMetadata metadata) {
+            this.key = key;
+            this.metadata = metadata;
+        }
+    }
+
+    public static final class Key {
+
+        private final String canonicalPath;
+        private final long lastModified;
+        private final long size;
+
+        public Key(String canonicalPath, long lastModified, long size) {
+            this.canonicalPath = canonicalPath;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        /**
+         * Builds the key for f, or returns null if f is not a readable file.
+         */
+        public static Key of(File f) {
+
+            if (!f.isFile())
+                return null;
+
+            try {
+                return new Key(f.getCanonicalPath(), f.lastModified(), f.length());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        public String getCanonicalPath() {
+            return canonicalPath;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return lastModified == key.lastModified
+                    && size == key.size
+                    && canonicalPath.equals(key.canonicalPath);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = canonicalPath.hashCode();
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            result = 31 * result + (int) (size ^ (size >>> 32));
+            return result;
+        }
+    }
+}
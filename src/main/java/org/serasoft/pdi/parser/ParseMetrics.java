@@ -0,0 +1,219 @@
+package org.serasoft.pdi.parser;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.utils.ConcurrentHistogram;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Class Name   : ParseMetrics.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Where the parse time of an analysis run goes. Each parser
+ * measures its own file in a FileStats, with no sharing, and hands it over once
+ * done: bytes read, StAX events, wall time and the time spent in each section
+ * handler. The run keeps lock-free histograms of those figures and the files
+ * that took the longest to parse on their own, links excluded.
+ */
+public class ParseMetrics {
+
+    public static final int DEFAULT_SLOWEST_COUNT = 10;
+
+    /**
+     * Section handlers measured within a file. Times of the same section add up
+     * over the file, so STEPS is the time spent in all the steps.
+     */
+    public enum Section {
+        ENTRIES,
+        STEPS,
+        CONNECTIONS,
+        // Resolving and checking links, including the parse of the linked files
+        LINKS
+    }
+
+    private static final Comparator<FileStats> OWN_TIME_ORDER = Comparator.comparingLong(FileStats::getOwnNanos);
+
+    private final ConcurrentHistogram wallTimes = new ConcurrentHistogram();
+    private final ConcurrentHistogram ownTimes = new ConcurrentHistogram();
+    private final ConcurrentHistogram bytes = new ConcurrentHistogram();
+    private final ConcurrentHistogram events = new ConcurrentHistogram();
+    private final Map<Section, ConcurrentHistogram> sectionTimes = new EnumMap<>(Section.class);
+
+    private final int slowestCount;
+    // Shortest of the slowest files on top
+    private final PriorityQueue<FileStats> slowest;
+    private volatile long slowestThreshold;
+
+    public ParseMetrics() {
+        this(DEFAULT_SLOWEST_COUNT);
+    }
+
+    public ParseMetrics(int slowestCount) {
+        this.slowestCount = slowestCount;
+        this.slowest = new PriorityQueue<>(Math.max(1, slowestCount), OWN_TIME_ORDER);
+        for (Section section : Section.values()) {
+            sectionTimes.put(section, new ConcurrentHistogram());
+        }
+    }
+
+    /**
+     * Starts measuring the parse of procFilename, from now on.
+     */
+    public FileStats start(String procFilename) {
+        return new FileStats(procFilename, System.nanoTime());
+    }
+
+    /**
+     * Ends the measure started with start and adds it to the run.
+     */
+    public void record(FileStats stats) {
+
+        stats.wallNanos = System.nanoTime() - stats.startNanos;
+
+        wallTimes.record(stats.wallNanos);
+        ownTimes.record(stats.getOwnNanos());
+        bytes.record(stats.bytes);
+        events.record(stats.events);
+        for (Section section : Section.values()) {
+            if (stats.sectionNanos[section.ordinal()] > 0)
+                sectionTimes.get(section).record(stats.sectionNanos[section.ordinal()]);
+        }
+
+        // Most files are faster than the slowest ones kept so far: skip the lock for them
+        if (slowestCount > 0 && stats.getOwnNanos() > slowestThreshold) {
+            synchronized (slowest) {
+                slowest.add(stats);
+                if (slowest.size() > slowestCount)
+                    slowest.poll();
+                if (slowest.size() == slowestCount)
+                    slowestThreshold = slowest.peek().getOwnNanos();
+            }
+        }
+    }
+
+    public long getFileCount() {
+        return wallTimes.getCount();
+    }
+
+    /**
+     * Time to parse each file, links included.
+     */
+    public ConcurrentHistogram getWallTimes() {
+        return wallTimes;
+    }
+
+    /**
+     * Time to parse each file, links excluded.
+     */
+    public ConcurrentHistogram getOwnTimes() {
+        return ownTimes;
+    }
+
+    public ConcurrentHistogram getBytes() {
+        return bytes;
+    }
+
+    public ConcurrentHistogram getEvents() {
+        return events;
+    }
+
+    /**
+     * Time spent in the section by each file that has it.
+     */
+    public ConcurrentHistogram getSectionTimes(Section section) {
+        return sectionTimes.get(section);
+    }
+
+    /**
+     * Files that took the longest to parse on their own, slowest first.
+     */
+    public List<FileStats> getSlowest() {
+
+        List<FileStats> files;
+        synchronized (slowest) {
+            files = new ArrayList<>(slowest);
+        }
+        files.sort(OWN_TIME_ORDER.reversed());
+        return files;
+    }
+
+    /**
+     * Figures of a single file, filled by the one parser reading it.
+     */
+    public static class FileStats {
+
+        private final String procFilename;
+        private final long startNanos;
+        private final long[] sectionNanos = new long[Section.values().length];
+        private long bytes;
+        private long events;
+        private long wallNanos;
+
+        FileStats(String procFilename, long startNanos) {
+            this.procFilename = procFilename;
+            this.startNanos = startNanos;
+        }
+
+        public void addSectionTime(Section section, long nanos) {
+            sectionNanos[section.ordinal()] += nanos;
+        }
+
+        public String getProcFilename() {
+            return procFilename;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        public void setEvents(long events) {
+            this.events = events;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         * Wall time without the time spent following links.
+         */
+        public long getOwnNanos() {
+            return wallNanos - sectionNanos[Section.LINKS.ordinal()];
+        }
+
+        public long getSectionNanos(Section section) {
+            return sectionNanos[section.ordinal()];
+        }
+    }
+}
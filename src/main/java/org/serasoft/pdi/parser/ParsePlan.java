@@ -0,0 +1,125 @@
+package org.serasoft.pdi.parser;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class Name   : ParsePlan.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Sections of a process file the parsers have to collect. Name and
+ * descriptions are always collected; the sections left out of the plan are
+ * skipped, and a parser stops reading the file once it is past the last section
+ * the plan needs.
+ */
+public class ParsePlan {
+
+    public enum Section {
+        PARAMETERS,
+        CONNECTIONS,
+        // The unique_connections flag of transformations
+        TRANS_FLAG,
+        // Job entries and transformation steps, with the links they carry
+        ITEMS,
+        HOPS
+    }
+
+    public static final ParsePlan ALL = new ParsePlan(EnumSet.allOf(Section.class));
+    // What comes before the items: enough for inventories of processes and their parameters
+    public static final ParsePlan HEADER = new ParsePlan(EnumSet.of(Section.PARAMETERS, Section.CONNECTIONS));
+
+    private static Logger l = LoggerFactory.getLogger(ParsePlan.class);
+
+    private final EnumSet<Section> sections;
+
+    public ParsePlan(Set<Section> sections) {
+        this.sections = sections.isEmpty() ? EnumSet.noneOf(Section.class) : EnumSet.copyOf(sections);
+    }
+
+    /**
+     * Builds the plan for the checks given with the -check option: parameters,
+     * connection and trans_flag. No checks at all means everything is collected.
+     */
+    public static ParsePlan fromChecks(List<String> checks) {
+
+        if (checks == null || checks.isEmpty())
+            return ALL;
+
+        EnumSet<Section> sections = EnumSet.noneOf(Section.class);
+        for (String check : checks) {
+            switch (check.trim().toLowerCase()) {
+                case "parameters":
+                    sections.add(Section.PARAMETERS);
+                    break;
+                case "connection":
+                    sections.add(Section.CONNECTIONS);
+                    break;
+                case "trans_flag":
+                    sections.add(Section.TRANS_FLAG);
+                    break;
+                default:
+                    l.warn("Unknown check " + check + " will be ignored");
+            }
+        }
+
+        return new ParsePlan(sections);
+    }
+
+    public boolean includes(Section section) {
+        return sections.contains(section);
+    }
+
+    /**
+     * Returns a plan that also collects the given section.
+     */
+    public ParsePlan with(Section section) {
+
+        if (sections.contains(section))
+            return this;
+
+        EnumSet<Section> extended = EnumSet.copyOf(sections);
+        extended.add(section);
+        return new ParsePlan(extended);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ParsePlan)) return false;
+
+        return sections.equals(((ParsePlan) o).sections);
+    }
+
+    @Override
+    public int hashCode() {
+        return sections.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return sections.toString();
+    }
+}
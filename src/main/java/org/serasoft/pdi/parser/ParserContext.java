@@ -0,0 +1,131 @@
+package org.serasoft.pdi.parser;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+/**
+ * Class Name   : ParserContext.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : State shared by every parser of a single analysis run, including
+ * the parsers created to follow links between processes. All of it is safe to
+ * use from concurrent worker threads.
+ */
+public class ParserContext {
+
+    public static final int DEFAULT_MAX_DEPTH = 64;
+
+    private ParseCache parseCache;
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    private ParsePlan parsePlan = ParsePlan.ALL;
+    private StringPool stringPool = new StringPool();
+    private DirectoryListingCache directoryListings = new DirectoryListingCache();
+    private VariableResolver variables = new VariableResolver();
+    private KettleEnvironment kettleEnvironment = KettleEnvironment.EMPTY;
+    // Null unless parse metrics are collected
+    private ParseMetrics metrics;
+
+    public ParserContext() {
+        this(ParseCache.DEFAULT_MAX_SIZE);
+    }
+
+    public ParserContext(int parseCacheSize) {
+        this.parseCache = new ParseCache(parseCacheSize);
+    }
+
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Sets how many levels of links are followed from a top level process.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+
+    public void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+    public DirectoryListingCache getDirectoryListings() {
+        return directoryListings;
+    }
+
+    public void setDirectoryListings(DirectoryListingCache directoryListings) {
+        this.directoryListings = directoryListings;
+    }
+
+    public VariableResolver getVariables() {
+        return variables;
+    }
+
+    /**
+     * Sets the resolver of the filenames of linked processes, and with it the
+     * variables shared by every process of the run.
+     */
+    public void setVariables(VariableResolver variables) {
+        this.variables = variables;
+    }
+
+    public KettleEnvironment getKettleEnvironment() {
+        return kettleEnvironment;
+    }
+
+    /**
+     * Sets the shared connections that items may use without the process defining
+     * them. The variables of kettle.properties are given to the parsers through
+     * the root scope of the variable resolver.
+     */
+    public void setKettleEnvironment(KettleEnvironment kettleEnvironment) {
+        this.kettleEnvironment = kettleEnvironment;
+    }
+
+    public ParseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets where the parsers of the run record their metrics. Without it nothing
+     * is measured.
+     */
+    public void setMetrics(ParseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ParsePlan getParsePlan() {
+        return parsePlan;
+    }
+
+    /**
+     * Sets the sections collected from every process of the run. Links are
+     * followed only when the plan includes the items.
+     */
+    public void setParsePlan(ParsePlan parsePlan) {
+        this.parsePlan = parsePlan;
+    }
+}
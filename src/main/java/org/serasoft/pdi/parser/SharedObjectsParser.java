@@ -0,0 +1,102 @@
+package org.serasoft.pdi.parser;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.Connection;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.utils.MetadataPath;
+import org.serasoft.pdi.parser.utils.ProcessFileInput;
+import org.serasoft.pdi.parser.utils.XMLInputFactoryHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Class Name   : SharedObjectsParser.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Reads the connections defined in a PDI shared.xml file. The
+ * returned metadata only holds those connections; slave servers, partition
+ * schemas and clusters are skipped.
+ */
+public class SharedObjectsParser extends BasePDIProcessParser {
+
+    private Logger l = LoggerFactory.getLogger(SharedObjectsParser.class);
+
+    private static final MetadataPath.Pattern SHARED_CONNECTION = MetadataPath.compile("/sharedobjects/connection");
+
+    public SharedObjectsParser(File sharedXml) {
+        super(sharedXml, 0, false);
+    }
+
+    @Override
+    public ProcessMetadata parse() {
+        return parse(null, null, null);
+    }
+
+    @Override
+    public ProcessMetadata parse(String parentPDIProcName, File parentPDIProcFile, String callerStepName) {
+
+        ProcessMetadata processMetadata = new ProcessMetadata();
+        ProcessFileInput procFileStream = null;
+        XMLStreamReader xmlStreamReader = null;
+
+        try {
+            MetadataPath metadataPath = new MetadataPath();
+
+            procFileStream = ProcessFileInput.open(procFileRef);
+            xmlStreamReader = XMLInputFactoryHolder.createXMLStreamReader(procFileStream);
+
+            processMetadata.setName(procFileRef.getName());
+            processMetadata.setProcFilename(getProcFileCanonicalPath());
+
+            while (xmlStreamReader.hasNext()) {
+                switch (xmlStreamReader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        metadataPath.push(xmlStreamReader.getLocalName());
+                        if (metadataPath.matches(SHARED_CONNECTION)) {
+                            Connection conn = parseConnection(xmlStreamReader, metadataPath);
+                            addConnectionToCollectedMetadata(conn, processMetadata);
+                        } else if (metadataPath.depth() > 1) {
+                            skipElement(xmlStreamReader, metadataPath);
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        metadataPath.pop();
+                        break;
+                }
+            }
+        } catch (XMLStreamException e2) {
+            l.error("Unable to parse " + procFileRef + ": " + e2.getLocalizedMessage());
+        } catch (IOException e3) {
+            l.error("Unable to read " + procFileRef + ": " + e3.getMessage());
+        } finally {
+            closeProcFile(xmlStreamReader, procFileStream);
+        }
+
+        return processMetadata;
+    }
+}
@@ -0,0 +1,73 @@
+package org.serasoft.pdi.parser;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class Name   : StringPool.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Per-run pool of the values that repeat across process files:
+ * step and entry types, step names, hop endpoints, connection names and
+ * settings. Every parser of the run gets the same instance for equal values.
+ * The pool is bounded: once full, or for values too long to be worth it,
+ * strings are returned as they are.
+ */
+public class StringPool {
+
+    public static final int DEFAULT_MAX_SIZE = 100000;
+    public static final int MAX_LENGTH = 128;
+
+    private final int maxSize;
+    private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+
+    public StringPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a pool holding at most maxSize values. Zero disables pooling.
+     */
+    public StringPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public String intern(String s) {
+
+        if (s == null || maxSize == 0 || s.length() > MAX_LENGTH)
+            return s;
+
+        String pooled = pool.get(s);
+        if (pooled != null)
+            return pooled;
+
+        // The bound is approximate under concurrent use, by at most one value per thread
+        if (pool.size() >= maxSize)
+            return s;
+
+        pooled = pool.putIfAbsent(s, s);
+        return pooled != null ? pooled : s;
+    }
+
+    public int size() {
+        return pool.size();
+    }
+}
@@ -19,16 +19,16 @@ package org.serasoft.pdi.parser;
 
 import org.serasoft.pdi.parser.model.*;
 import org.serasoft.pdi.parser.utils.MetadataPath;
+import org.serasoft.pdi.parser.utils.ProcessFileInput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -47,10 +47,54 @@ public class TransformationParser extends org.serasoft.pdi.parser.BasePDIProcess
 
     private Logger l = LoggerFactory.getLogger(TransformationParser.class);
 
+    // Step types whose <filename> is the process they run
+    private static final Map<String, ProcessTypeEnum> LINKING_STEP_TYPES = new HashMap<>();
+
+    static {
+        LINKING_STEP_TYPES.put("JobExecutor", ProcessTypeEnum.JOB);
+        LINKING_STEP_TYPES.put("TransExecutor", ProcessTypeEnum.TRANSFORMATION);
+        LINKING_STEP_TYPES.put("Mapping", ProcessTypeEnum.TRANSFORMATION);
+        LINKING_STEP_TYPES.put("SimpleMapping", ProcessTypeEnum.TRANSFORMATION);
+        LINKING_STEP_TYPES.put("SingleThreader", ProcessTypeEnum.TRANSFORMATION);
+        LINKING_STEP_TYPES.put("MetaInject", ProcessTypeEnum.TRANSFORMATION);
+    }
+
+    // How a link of each step type to a file that does not exist is reported
+    private static final Map<String, String> MISSING_REF_TYPES = new HashMap<>();
+
+    static {
+        MISSING_REF_TYPES.put("JobExecutor", MissingReference.TYPE_JOB_EXECUTOR_FILE);
+        MISSING_REF_TYPES.put("TransExecutor", MissingReference.TYPE_TRANS_EXECUTOR_FILE);
+        MISSING_REF_TYPES.put("Mapping", MissingReference.TYPE_MAPPING_FILE);
+        MISSING_REF_TYPES.put("SimpleMapping", MissingReference.TYPE_MAPPING_FILE);
+        MISSING_REF_TYPES.put("SingleThreader", MissingReference.TYPE_TRANS_FILE);
+        MISSING_REF_TYPES.put("MetaInject", MissingReference.TYPE_TRANS_FILE);
+    }
+
+    private static final MetadataPath.Pattern TRANS_INFO = MetadataPath.compile("/transformation/info");
+    private static final MetadataPath.Pattern TRANS_STEP = MetadataPath.compile("/transformation/step");
+    private static final MetadataPath.Pattern TRANS_ORDER = MetadataPath.compile("/transformation/order");
+    private static final MetadataPath.Pattern TRANS_NAME = MetadataPath.compile("/transformation/info/name");
+    private static final MetadataPath.Pattern TRANS_DESCRIPTION = MetadataPath.compile("/transformation/info/description");
+    private static final MetadataPath.Pattern TRANS_EXTENDED_DESCRIPTION = MetadataPath.compile("/transformation/info/extended_description");
+    private static final MetadataPath.Pattern TRANS_UNIQUE_CONNECTIONS = MetadataPath.compile("/transformation/info/unique_connections");
+    private static final MetadataPath.Pattern TRANS_PARAMETERS = MetadataPath.compile("/transformation/info/parameters");
+    private static final MetadataPath.Pattern TRANS_CONNECTION = MetadataPath.compile("/transformation/connection");
+
+    // Top level sections in the order PDI writes them, used to stop reading once the plan is satisfied
+    private static final int SECTION_INFO = 0;
+    private static final int SECTION_CONNECTIONS = 1;
+    private static final int SECTION_HOPS = 2;
+    private static final int SECTION_STEPS = 3;
+
     public TransformationParser(File transFile, int depth, boolean followSymlinks) {
         super(transFile, depth, followSymlinks);
     }
 
+    public TransformationParser(File transFile, int depth, boolean followSymlinks, ParserContext context) {
+        super(transFile, depth, followSymlinks, context);
+    }
+
     public ProcessMetadata parse() {
         return parse(null, null, null);
     }
@@ -59,18 +103,27 @@ public class TransformationParser extends org.serasoft.pdi.parser.BasePDIProcess
 
         Map<String, ProcessItem> items = new HashMap<>();
         ProcessMetadata processMetadata = new ProcessMetadata();
+        ProcessFileInput procFileStream = null;
+        XMLStreamReader xmlStreamReader = null;
+        startMetrics();
 
         try {
             MetadataPath metadataPath = new MetadataPath();
 
-            XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(new FileInputStream(procFileRef));
+            procFileStream = ProcessFileInput.open(procFileRef);
+            xmlStreamReader = openReader(procFileStream);
             String elementName;
             int eventType;
+            ParsePlan plan = context.getParsePlan();
+            int lastSection = lastSectionOf(plan);
+            boolean planCompleted = false;
 
             // Set process type in collected informations' structure
             processMetadata.setTypeEnum(ProcessTypeEnum.TRANSFORMATION);
+            processMetadata.setProcFilename(getProcFileCanonicalPath());
+            processMetadata.setPartial(!plan.equals(ParsePlan.ALL));
 
-            while (xmlStreamReader.hasNext()) {
+            while (!planCompleted && xmlStreamReader.hasNext()) {
 
                 eventType = xmlStreamReader.next();
                 switch (eventType) {
@@ -78,29 +131,38 @@ public class TransformationParser extends org.serasoft.pdi.parser.BasePDIProcess
                         elementName = xmlStreamReader.getLocalName();
                         metadataPath.push(elementName);
 
-                        if (metadataPath.path().equals("/transformation/step")) {
+                        if (metadataPath.depth() == 2 && sectionOf(metadataPath) > lastSection) {
+                            planCompleted = true;
+                        } else if (metadataPath.matches(TRANS_STEP) && plan.includes(ParsePlan.Section.ITEMS)) {
+                            long start = startTimer();
                             parseStep(xmlStreamReader, metadataPath, processMetadata);
-                        } else if (metadataPath.path().equals("/transformation/order")) {
+                            stopTimer(ParseMetrics.Section.STEPS, start);
+                        } else if (metadataPath.matches(TRANS_ORDER) && plan.includes(ParsePlan.Section.HOPS)) {
                             parseHops(xmlStreamReader, metadataPath, processMetadata);
-                        } else if (metadataPath.path().equals("/transformation/info/name")) {
+                        } else if (metadataPath.matches(TRANS_NAME)) {
                             processMetadata.setName(readElementText(xmlStreamReader, metadataPath));
-                        } else if (metadataPath.path().equals("/transformation/info/description")) {
+                        } else if (metadataPath.matches(TRANS_DESCRIPTION)) {
                             processMetadata.setDescription(readElementText(xmlStreamReader, metadataPath));
-                        } else if (metadataPath.path().equals("/transformation/info/extended_description")) {
+                        } else if (metadataPath.matches(TRANS_EXTENDED_DESCRIPTION)) {
                             processMetadata.setExtendedDescription(readElementText(xmlStreamReader, metadataPath));
-                        } else if (metadataPath.path().equals("/transformation/info/unique_connections")) {
+                        } else if (metadataPath.matches(TRANS_UNIQUE_CONNECTIONS) && plan.includes(ParsePlan.Section.TRANS_FLAG)) {
                             processMetadata.setTransactional(readElementText(xmlStreamReader, metadataPath));
-                        } else if (metadataPath.path().equals("/transformation/info/parameters")) {
+                        } else if (metadataPath.matches(TRANS_PARAMETERS) && plan.includes(ParsePlan.Section.PARAMETERS)) {
                             parseParameters(xmlStreamReader, metadataPath, processMetadata);
-                        } else if (metadataPath.path().equals("/transformation/connection")) {
+                        } else if (metadataPath.matches(TRANS_CONNECTION) && plan.includes(ParsePlan.Section.CONNECTIONS)) {
                             Connection conn = parseConnection(xmlStreamReader, metadataPath);
 
                             addConnectionToCollectedMetadata(conn, processMetadata);
+                        } else if (metadataPath.depth() > 1 && !metadataPath.matches(TRANS_INFO)) {
+                            // Notepads, log tables, error handling, partitioning and so on: nothing to collect
+                            skipElement(xmlStreamReader, metadataPath);
                         }
                         break;
 
                     case XMLStreamConstants.END_ELEMENT:
                         elementName = xmlStreamReader.getLocalName();
+                        if (metadataPath.matches(TRANS_INFO) && lastSection == SECTION_INFO)
+                            planCompleted = true;
                         metadataPath.pop();
                         if (elementName.equals("transformation")) {
                             // TODO: Manage events on transformation parse finish?
@@ -110,14 +172,54 @@ public class TransformationParser extends org.serasoft.pdi.parser.BasePDIProcess
                 }
             }
         } catch (FileNotFoundException e1) {
-            // TODO Manage missing refs for transformations. There could exists in Mapping, Transf Executor
+            addMissingReferenceToCollectedMetadata(MissingReference.TYPE_TRANS_FILE,
+                    getProcFileCanonicalPath(),
+                    callerStepName,
+                    parentPDIProcName,
+                    parentPDIProcFile != null ? parentPDIProcFile.getAbsolutePath() : null,
+                    processMetadata);
         } catch (XMLStreamException e2) {
             l.error(e2.getLocalizedMessage());
+        } catch (IOException e3) {
+            l.error("Unable to read " + procFileRef + ": " + e3.getMessage());
+        } finally {
+            closeProcFile(xmlStreamReader, procFileStream);
         }
 
+        // The file is closed before following its links
+        resolveReferences(processMetadata);
+        recordMetrics();
+
         return processMetadata;
     }
 
+    private static int lastSectionOf(ParsePlan plan) {
+
+        if (plan.includes(ParsePlan.Section.ITEMS))
+            return SECTION_STEPS;
+        else if (plan.includes(ParsePlan.Section.HOPS))
+            return SECTION_HOPS;
+        else if (plan.includes(ParsePlan.Section.CONNECTIONS))
+            return SECTION_CONNECTIONS;
+
+        return SECTION_INFO;
+    }
+
+    private static int sectionOf(MetadataPath metadataPath) {
+
+        if (metadataPath.matches(TRANS_STEP))
+            return SECTION_STEPS;
+        else if (metadataPath.matches(TRANS_ORDER))
+            return SECTION_HOPS;
+        else if (metadataPath.matches(TRANS_CONNECTION))
+            return SECTION_CONNECTIONS;
+        else if (metadataPath.matches(TRANS_INFO))
+            return SECTION_INFO;
+
+        // Sections that are never collected do not move the parse forward
+        return -1;
+    }
+
     private void parseHops(XMLStreamReader xmlStreamReader,
                            MetadataPath metadataPath,
                            ProcessMetadata processMetadata) {
@@ -173,9 +275,9 @@ public class TransformationParser extends org.serasoft.pdi.parser.BasePDIProcess
                         metadataPath.push(elementName);
 
                         if (elementName.equals("from")) {
-                            from = readElementText(xmlStreamReader, metadataPath);
+                            from = intern(readElementText(xmlStreamReader, metadataPath));
                         } else if (elementName.equals("to")) {
-                            to = readElementText(xmlStreamReader, metadataPath);
+                            to = intern(readElementText(xmlStreamReader, metadataPath));
                         }
                         break;
                     case XMLStreamReader.END_ELEMENT:
@@ -217,10 +319,10 @@ public class TransformationParser extends org.serasoft.pdi.parser.BasePDIProcess
                         elementName = xmlStreamReader.getLocalName();
                         metadataPath.push(elementName);
                         if (elementName.equals("name")) {
-                            stepName = readElementText(xmlStreamReader, metadataPath);
+                            stepName = intern(readElementText(xmlStreamReader, metadataPath));
                             l.debug("Name: " + stepName);
                         } else if (elementName.equals("type")) {
-                            String stepItemClass = readElementText(xmlStreamReader, metadataPath);
+                            String stepItemClass = intern(readElementText(xmlStreamReader, metadataPath));
                             step = new ProcessItem(ProcessItemTypeEnum.STEP,
                                     stepItemClass,
                                     stepName);
@@ -233,11 +335,23 @@ public class TransformationParser extends org.serasoft.pdi.parser.BasePDIProcess
                         } else if (elementName.equals("description")) {
                             assert step != null;
                             step.setDescription(readElementText(xmlStreamReader, metadataPath));
+                        } else if (elementName.equals("connection") && step != null) {
+                            String connectionName = readElementText(xmlStreamReader, metadataPath);
+                            if (!connectionName.isEmpty())
+                                step.setConnectionName(intern(connectionName));
                         } else if (elementName.equals("filename")) {
                             pdiProcFilename = readElementText(xmlStreamReader, metadataPath);
-                            if (pdiProcFilename != null) {
-                                l.debug("Filename: " + pdiProcFilename);
+                            ProcessTypeEnum linkedProcType = step != null ? LINKING_STEP_TYPES.get(step.getItemClass()) : null;
+                            if (linkedProcType != null && !pdiProcFilename.isEmpty()) {
+                                linkProcess(step,
+                                        pdiProcFilename,
+                                        linkedProcType,
+                                        MISSING_REF_TYPES.get(step.getItemClass()),
+                                        processMetadata);
                             }
+                        } else {
+                            // Fields, GUI coordinates, partitioning and the step specific settings
+                            skipElement(xmlStreamReader, metadataPath);
                         }
                         break;
                     case XMLStreamReader.END_ELEMENT:
@@ -283,6 +397,9 @@ public class TransformationParser extends org.serasoft.pdi.parser.BasePDIProcess
                         } else if (elementName.equals("variable_type")) {
                             assert var != null;
                             var.setScope(readElementText(xmlStreamReader, metadataPath));
+                        } else if (elementName.equals("default_value")) {
+                            assert var != null;
+                            var.setValue(readElementText(xmlStreamReader, metadataPath));
                         }
                         break;
                     case XMLStreamReader.END_ELEMENT:
@@ -0,0 +1,86 @@
+package org.serasoft.pdi.parser;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.utils.VariableScope;
+import org.serasoft.pdi.parser.utils.VariableTemplate;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class Name   : VariableResolver.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Per-run variable resolution. Holds the outermost scope shared
+ * by every process of the run and the templates compiled so far: the same
+ * filename text, like ${Internal.Entry.Current.Directory}/load.ktr, shows up in
+ * many files and is compiled once. The template cache is bounded: once full,
+ * new texts are compiled on each use.
+ */
+public class VariableResolver {
+
+    public static final int DEFAULT_MAX_TEMPLATES = 100000;
+
+    private final VariableScope rootScope;
+    private final int maxTemplates;
+    private final ConcurrentHashMap<String, VariableTemplate> templates = new ConcurrentHashMap<>();
+
+    public VariableResolver() {
+        this(VariableScope.EMPTY);
+    }
+
+    public VariableResolver(VariableScope rootScope) {
+        this(rootScope, DEFAULT_MAX_TEMPLATES);
+    }
+
+    public VariableResolver(VariableScope rootScope, int maxTemplates) {
+        this.rootScope = rootScope;
+        this.maxTemplates = maxTemplates;
+    }
+
+    /**
+     * The scope every process scope is built on.
+     */
+    public VariableScope getRootScope() {
+        return rootScope;
+    }
+
+    public VariableTemplate compile(String text) {
+
+        VariableTemplate template = templates.get(text);
+        if (template != null)
+            return template;
+
+        template = VariableTemplate.compile(text);
+        // The bound is approximate under concurrent use, by at most one template per thread
+        if (templates.size() < maxTemplates)
+            templates.putIfAbsent(text, template);
+
+        return template;
+    }
+
+    public String resolve(String text, VariableScope scope) {
+        return compile(text).resolve(scope);
+    }
+
+    public int size() {
+        return templates.size();
+    }
+}
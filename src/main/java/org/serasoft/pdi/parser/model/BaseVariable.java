@@ -15,6 +15,8 @@ package org.serasoft.pdi.parser.model;
  *  limitations under the License.
  */
 
+import java.io.Serializable;
+
 /**
  * Class Name   : ProcessVariableBase.java
  * Package Name : org.serasoft.pdi.model
@@ -23,7 +25,9 @@ package org.serasoft.pdi.parser.model;
  * Creation Date: 01/12/16
  * Description  :
  */
-public class BaseVariable {
+public class BaseVariable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String name;
 
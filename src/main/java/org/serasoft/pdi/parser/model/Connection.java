@@ -1,6 +1,7 @@
 package org.serasoft.pdi.parser.model;
 
 import java.io.File;
+import java.io.Serializable;
 import java.util.HashMap;
 
 /**
@@ -27,12 +28,16 @@ import java.util.HashMap;
  * Creation Date: 25/11/16
  * Description  :
  */
-public class Connection {
+public class Connection implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String name;
     private File pdiProcFile;
     private HashMap<String, String> properties;
     private HashMap<String, String> jdbcAttributes;
+    // Hash of the normalized settings, see ConnectionFingerprint
+    private long fingerprint;
 
     public Connection(String name, File pdiProcFile) {
         this.name = name;
@@ -71,6 +76,14 @@ public class Connection {
         this.jdbcAttributes = jdbcAttributes;
     }
 
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
     @Override
     public String toString() {
         return "PDIProcessConnection{" +
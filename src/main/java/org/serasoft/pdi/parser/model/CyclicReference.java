@@ -0,0 +1,79 @@
+package org.serasoft.pdi.parser.model;
+
+/**
+ * Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Class Name   : CyclicReference.java
+ * Package Name : org.serasoft.pdi.model
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : A link to a process that is already being parsed further up the
+ * chain of callers. The link is reported and not followed.
+ */
+public class CyclicReference implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String referencingStepName;
+    private String referencingProcName;
+    private String referencingProcFilename;
+    private String refValue;
+    private List<String> cycle;
+
+    public CyclicReference(String referencingStepName,
+                           String referencingProcName,
+                           String referencingProcFilename) {
+        this.referencingStepName = referencingStepName;
+        this.referencingProcName = referencingProcName;
+        this.referencingProcFilename = referencingProcFilename;
+    }
+
+    public String getReferencingStepName() {
+        return referencingStepName;
+    }
+
+    public String getReferencingProcName() {
+        return referencingProcName;
+    }
+
+    public String getReferencingProcFilename() {
+        return referencingProcFilename;
+    }
+
+    public String getRefValue() {
+        return refValue;
+    }
+
+    public void setRefValue(String refValue) {
+        this.refValue = refValue;
+    }
+
+    /**
+     * Files making up the cycle, starting and ending with the linked file.
+     */
+    public List<String> getCycle() {
+        return cycle;
+    }
+
+    public void setCycle(List<String> cycle) {
+        this.cycle = cycle;
+    }
+}
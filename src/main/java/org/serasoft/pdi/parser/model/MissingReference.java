@@ -16,6 +16,8 @@ package org.serasoft.pdi.parser.model;
  * limitations under the License.
  */
 
+import java.io.Serializable;
+
 /**
  * Class Name   : PDIProcessMissingReferences.java
  * Package Name : org.serasoft.pdi.model
@@ -24,7 +26,16 @@ package org.serasoft.pdi.parser.model;
  * Creation Date: 30/11/16
  * Description  :
  */
-public class MissingReference {
+public class MissingReference implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Kind of item whose linked file was not found
+    public static final String TYPE_JOB_FILE = "JobFileRef";
+    public static final String TYPE_TRANS_FILE = "TransFileRef";
+    public static final String TYPE_MAPPING_FILE = "MappingFileRef";
+    public static final String TYPE_JOB_EXECUTOR_FILE = "JobExecutorFileRef";
+    public static final String TYPE_TRANS_EXECUTOR_FILE = "TransExecutorFileRef";
 
     private String referencingStepName;
     private String referencingProcName;
@@ -26,6 +26,8 @@ package org.serasoft.pdi.parser.model;
  */
 public class Parameter extends BaseVariable {
 
+    private static final long serialVersionUID = 1L;
+
     private String defaultValue;
     private String description;
 
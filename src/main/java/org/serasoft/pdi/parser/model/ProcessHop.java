@@ -18,6 +18,8 @@ package org.serasoft.pdi.parser.model;
  *
  */
 
+import java.io.Serializable;
+
 /**
  * Class Name   : ProcessHop.java
  * Package Name : org.serasoft.pdi.model
@@ -26,7 +28,9 @@ package org.serasoft.pdi.parser.model;
  * Creation Date: 08/04/18
  * Description  :
  */
-public class ProcessHop {
+public class ProcessHop implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     String from;
     String to;
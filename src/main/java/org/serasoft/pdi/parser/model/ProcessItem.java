@@ -18,6 +18,8 @@ package org.serasoft.pdi.parser.model;
  *
  */
 
+import java.io.Serializable;
+
 /**
  * Class Name   : ProcessItem.java
  * Package Name : org.serasoft.pdi.model
@@ -26,13 +28,17 @@ package org.serasoft.pdi.parser.model;
  * Creation Date: 08/04/18
  * Description  :
  */
-public class ProcessItem {
+public class ProcessItem implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private ProcessItemTypeEnum type;
     private String itemClass;
     private String name;
     private String description;
     private ProcessMetadata linkedProcess;
+    private String linkedProcFilename;
+    private String connectionName;
 
     public ProcessItem(ProcessItemTypeEnum type) {
         this.type = type;
@@ -71,4 +77,28 @@ public class ProcessItem {
     public void setLinkedProcess(ProcessMetadata linkedProcess) {
         this.linkedProcess = linkedProcess;
     }
+
+    /**
+     * Resolved pathname of the process this item links to, whether or not the
+     * link was followed: absolute and normalized, but not canonicalized, or kept
+     * as written when it has variables no scope resolves.
+     */
+    public String getLinkedProcFilename() {
+        return linkedProcFilename;
+    }
+
+    public void setLinkedProcFilename(String linkedProcFilename) {
+        this.linkedProcFilename = linkedProcFilename;
+    }
+
+    /**
+     * Name of the database connection the item uses, if any.
+     */
+    public String getConnectionName() {
+        return connectionName;
+    }
+
+    public void setConnectionName(String connectionName) {
+        this.connectionName = connectionName;
+    }
 }
@@ -18,6 +18,7 @@ package org.serasoft.pdi.parser.model;
  *
  */
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 
@@ -29,7 +30,9 @@ import java.util.Map;
  * Creation Date: 09/01/17
  * Description  :
  */
-public class ProcessMetadata {
+public class ProcessMetadata implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private static final String TRANSACTIONAL_YES = "Y";
     private List<Connection> connections;
@@ -39,13 +42,18 @@ public class ProcessMetadata {
 
     private Map<String, Parameter> params;
     private List<MissingReference> missingRefs;
+    private List<CyclicReference> cyclicRefs;
     private List<Variable> vars;
 
     private ProcessTypeEnum typeEnum;
+    private String procFilename;
     private String name;
     private String description;
     private String extendedDescription;
     private boolean transactional;
+    private boolean truncated;
+    private boolean cycleCut;
+    private boolean partial;
 
     public ProcessMetadata() {
         init();
@@ -73,6 +81,17 @@ public class ProcessMetadata {
         this.typeEnum = typeEnum;
     }
 
+    /**
+     * Canonical pathname of the file this metadata was collected from.
+     */
+    public String getProcFilename() {
+        return procFilename;
+    }
+
+    public void setProcFilename(String procFilename) {
+        this.procFilename = procFilename;
+    }
+
     public String getName() {
         return name;
     }
@@ -121,6 +140,53 @@ public class ProcessMetadata {
         this.missingRefs = missingRefs;
     }
 
+    public List<CyclicReference> getCyclicRefs() {
+        return cyclicRefs;
+    }
+
+    public void setCyclicRefs(List<CyclicReference> cyclicRefs) {
+        this.cyclicRefs = cyclicRefs;
+    }
+
+    /**
+     * True when some link below this process was not followed because the
+     * maximum link depth was reached.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    /**
+     * True when some link of this process, or below it, was not followed because
+     * it closes a cycle through the process itself or one of its callers. Like a
+     * truncated result, what was collected depends on where the process was
+     * reached from.
+     */
+    public boolean isCycleCut() {
+        return cycleCut;
+    }
+
+    public void setCycleCut(boolean cycleCut) {
+        this.cycleCut = cycleCut;
+    }
+
+    /**
+     * True when the process was parsed with a plan that leaves some sections
+     * out, such as a header-only parse: missing items, hops or connections do
+     * not mean the process has none.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
     public List<Variable> getVars() {
         return vars;
     }
@@ -25,7 +25,11 @@ package org.serasoft.pdi.parser.model;
  */
 public class Variable extends BaseVariable {
 
+    private static final long serialVersionUID = 1L;
+
     private String scope;
+    // Value set by a job, default value when a transformation sets it from its rows
+    private String value;
     private String stepName;
 
     public Variable(String stepName, String name) {
@@ -41,6 +45,14 @@ public class Variable extends BaseVariable {
         this.scope = scope;
     }
 
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
     public String getStepName() {
         return stepName;
     }
@@ -54,6 +66,7 @@ public class Variable extends BaseVariable {
         return "ProcessVariable{" +
                 "name='" + getName() + '\'' +
                 ", scope='" + scope + '\'' +
+                ", value='" + value + '\'' +
                 ", stepName='" + stepName + '\'' +
                 '}';
     }
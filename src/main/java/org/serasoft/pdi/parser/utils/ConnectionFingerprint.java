@@ -0,0 +1,90 @@
+package org.serasoft.pdi.parser.utils;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.Connection;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class Name   : ConnectionFingerprint.java
+ * Package Name : org.serasoft.pdi.parser.utils
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : 64 bit FNV-1a hash of the settings of a connection, the same
+ * on every run and JVM. Settings are normalized first: sorted by name, values
+ * trimmed, empty values left out, so that two copies of a connection only get
+ * different fingerprints when one of their settings really differs.
+ */
+public final class ConnectionFingerprint {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ConnectionFingerprint() {
+    }
+
+    public static long of(Connection c) {
+
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, c.getProperties());
+        // Keeps a property from being confused with an attribute of the same name
+        hash = hash(hash, '\u0001');
+        return hash(hash, c.getJdbcAttributes());
+    }
+
+    /**
+     * Fingerprint as written in reports.
+     */
+    public static String toHex(long fingerprint) {
+        return String.format("%016x", fingerprint);
+    }
+
+    private static long hash(long hash, Map<String, String> settings) {
+
+        if (settings == null)
+            return hash;
+
+        for (Map.Entry<String, String> setting : new TreeMap<>(settings).entrySet()) {
+            String value = setting.getValue() != null ? setting.getValue().trim() : "";
+            if (value.isEmpty())
+                continue;
+
+            hash = hash(hash, setting.getKey());
+            hash = hash(hash, '=');
+            hash = hash(hash, value);
+            hash = hash(hash, '\n');
+        }
+
+        return hash;
+    }
+
+    private static long hash(long hash, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            hash = hash(hash, s.charAt(i));
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, char c) {
+        hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+        return (hash ^ (c >>> 8)) * FNV_PRIME;
+    }
+}
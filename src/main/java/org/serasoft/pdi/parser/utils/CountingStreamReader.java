@@ -0,0 +1,57 @@
+package org.serasoft.pdi.parser.utils;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * Class Name   : CountingStreamReader.java
+ * Package Name : org.serasoft.pdi.parser.utils
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : StAX reader counting the events it goes through. Only used
+ * when parse metrics are collected, so that plain runs keep calling the
+ * underlying reader directly.
+ */
+public class CountingStreamReader extends StreamReaderDelegate {
+
+    private long events;
+
+    public CountingStreamReader(XMLStreamReader reader) {
+        super(reader);
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+        events++;
+        return super.next();
+    }
+
+    @Override
+    public int nextTag() throws XMLStreamException {
+        events++;
+        return super.nextTag();
+    }
+
+    public long getEvents() {
+        return events;
+    }
+}
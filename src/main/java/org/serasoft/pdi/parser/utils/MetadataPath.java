@@ -3,7 +3,7 @@ package org.serasoft.pdi.parser.utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
  *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
@@ -31,7 +31,14 @@ import java.util.LinkedList;
  */
 public class MetadataPath {
 
-    private LinkedList<String> queue;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int ROOT_HASH = 1;
+
+    // Element names from root to current element and, for each depth, the hash of the path up to it
+    private String[] elements;
+    private int[] hashes;
+    private int size;
+
     private static Logger l = LoggerFactory.getLogger(MetadataPath.class);
 
 
@@ -44,33 +51,108 @@ public class MetadataPath {
     }
 
     protected void init(String rootElement) {
-        queue = new LinkedList<>();
+        elements = new String[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+        size = 0;
         if (rootElement != null)
             push(rootElement);
     }
 
     public void push(String value) {
-        queue.addLast(value);
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+
+        elements[size] = value;
+        hashes[size] = childHash(size == 0 ? ROOT_HASH : hashes[size - 1], value);
+        size++;
         // l.debug("Depth: " + depth() + " - Path: " + path());
     }
 
     public void pop() {
-        queue.removeLast();
+        elements[--size] = null;
     }
 
     public int depth() {
-        return queue.size();
+        return size;
+    }
+
+    /**
+     * Tells if the current path is exactly the compiled one. This is an int
+     * comparison in the common case; element names are only compared when the
+     * hashes match, and never allocate.
+     */
+    public boolean matches(Pattern pattern) {
+
+        if (size != pattern.elements.length || size == 0 || hashes[size - 1] != pattern.hash)
+            return false;
+
+        for (int i = size - 1; i >= 0; i--) {
+            // Parser's element names and pattern's names are both interned in the common case
+            if (elements[i] != pattern.elements[i] && !elements[i].equals(pattern.elements[i]))
+                return false;
+        }
+
+        return true;
     }
 
     public String path() {
 
-        return "/" + String.join("/", queue);
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            path.append('/').append(elements[i]);
+        }
+
+        return size == 0 ? "/" : path.toString();
+    }
+
+    /**
+     * Compiles an absolute path such as /job/entries so that it can be matched
+     * against a MetadataPath with {@link #matches(Pattern)}.
+     */
+    public static Pattern compile(String path) {
+
+        String[] names = path.substring(path.startsWith("/") ? 1 : 0).split("/");
+        int hash = ROOT_HASH;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].intern();
+            hash = childHash(hash, names[i]);
+        }
+
+        return new Pattern(path, names, hash);
+    }
+
+    private static int childHash(int parentHash, String element) {
+        return 31 * parentHash + element.hashCode();
     }
 
     @Override
     public String toString() {
         return "PDIMetadataPath{" +
-                "queue=" + queue.toString() +
+                "queue=" + Arrays.toString(Arrays.copyOf(elements, size)) +
                 '}';
     }
+
+    public static final class Pattern {
+
+        private final String path;
+        private final String[] elements;
+        private final int hash;
+
+        private Pattern(String path, String[] elements, int hash) {
+            this.path = path;
+            this.elements = elements;
+            this.hash = hash;
+        }
+
+        public int depth() {
+            return elements.length;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
 }
@@ -0,0 +1,195 @@
+package org.serasoft.pdi.parser.utils;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class Name   : ProcessFileInput.java
+ * Package Name : org.serasoft.pdi.parser.utils
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Bytes of a process file, ready to be handed to the StAX reader
+ * together with the encoding sniffed from its first bytes. Files are streamed
+ * through a buffer, so that a parse that stops early, such as a header only
+ * one, reads no more of the file than it needs. Memory-mapping large files was
+ * measured no faster than the buffer, and mappings are only released by the
+ * garbage collector, so files are never mapped.
+ */
+public class ProcessFileInput extends FilterInputStream {
+
+    // The XML declaration is expected within the first bytes of the file
+    private static final int SNIFF_LENGTH = 256;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String encoding;
+    private final long length;
+    private long bytesRead;
+
+    private ProcessFileInput(InputStream in, String encoding, long length) {
+        super(in);
+        this.encoding = encoding;
+        this.length = length;
+    }
+
+    /**
+     * Opens procFile. A missing file gives a FileNotFoundException, as with a
+     * FileInputStream.
+     */
+    public static ProcessFileInput open(File procFile) throws IOException {
+
+        FileInputStream fileIn = new FileInputStream(procFile);
+        try {
+            long size = fileIn.getChannel().size();
+
+            BufferedInputStream in = new BufferedInputStream(fileIn, BUFFER_SIZE);
+            in.mark(SNIFF_LENGTH);
+            byte[] head = new byte[SNIFF_LENGTH];
+            int length = 0;
+            for (int n; length < SNIFF_LENGTH && (n = in.read(head, length, SNIFF_LENGTH - length)) > 0; ) {
+                length += n;
+            }
+            in.reset();
+
+            return new ProcessFileInput(in, sniffEncoding(ByteBuffer.wrap(head, 0, length)), size);
+        } catch (IOException | RuntimeException e) {
+            fileIn.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Encoding of the file: the one given by its byte order mark or XML
+     * declaration, UTF-8 when neither says otherwise, null when the declared
+     * encoding is not supported and the StAX reader has to work it out.
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Size of the file in bytes.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Bytes handed out so far. The reader buffers ahead, so after a parse that
+     * stops early this is what was taken from the file, not what was parsed.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        int b = in.read();
+        if (b >= 0)
+            bytesRead++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        int n = in.read(b, off, len);
+        if (n > 0)
+            bytesRead += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+
+        long skipped = in.skip(n);
+        bytesRead += skipped;
+        return skipped;
+    }
+
+    // Marks would let the same bytes be counted twice
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Reads the encoding from the first bytes of an XML document, without moving
+     * the buffer position.
+     */
+    static String sniffEncoding(ByteBuffer bytes) {
+
+        int start = bytes.position();
+        int length = Math.min(bytes.remaining(), SNIFF_LENGTH);
+
+        if (length >= 3 && byteAt(bytes, start) == 0xEF && byteAt(bytes, start + 1) == 0xBB && byteAt(bytes, start + 2) == 0xBF)
+            return "UTF-8";
+        if (length >= 2 && ((byteAt(bytes, start) == 0xFE && byteAt(bytes, start + 1) == 0xFF)
+                || (byteAt(bytes, start) == 0xFF && byteAt(bytes, start + 1) == 0xFE)))
+            // The reader picks the byte order from the mark
+            return "UTF-16";
+        if (length >= 2 && byteAt(bytes, start) == '<' && byteAt(bytes, start + 1) == 0)
+            return "UTF-16LE";
+        if (length >= 2 && byteAt(bytes, start) == 0 && byteAt(bytes, start + 1) == '<')
+            return "UTF-16BE";
+
+        // ASCII compatible: look for encoding="..." in the XML declaration
+        byte[] head = new byte[length];
+        for (int i = 0; i < length; i++) {
+            head[i] = bytes.get(start + i);
+        }
+        String prolog = new String(head, StandardCharsets.ISO_8859_1);
+        if (!prolog.startsWith("<?xml"))
+            return "UTF-8";
+
+        int declarationEnd = prolog.indexOf("?>");
+        int attribute = prolog.indexOf("encoding");
+        if (attribute < 0 || (declarationEnd >= 0 && attribute > declarationEnd))
+            return "UTF-8";
+
+        int quote = attribute + "encoding".length();
+        while (quote < prolog.length() && prolog.charAt(quote) != '"' && prolog.charAt(quote) != '\'') {
+            quote++;
+        }
+        int valueEnd = quote + 1 < prolog.length() ? prolog.indexOf(prolog.charAt(quote), quote + 1) : -1;
+        if (valueEnd < 0)
+            return "UTF-8";
+
+        String declared = prolog.substring(quote + 1, valueEnd).trim();
+        try {
+            return Charset.isSupported(declared) ? declared : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int byteAt(ByteBuffer bytes, int index) {
+        return bytes.get(index) & 0xFF;
+    }
+}
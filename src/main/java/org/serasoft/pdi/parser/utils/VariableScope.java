@@ -0,0 +1,64 @@
+package org.serasoft.pdi.parser.utils;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Class Name   : VariableScope.java
+ * Package Name : org.serasoft.pdi.parser.utils
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : One layer of variable values on top of an enclosing scope, as
+ * kettle.properties, the parameters of a process, the variables it sets and its
+ * internal variables. A variable is looked up in the innermost layer first.
+ * Scopes are never changed once built, so they can be shared between threads.
+ */
+public final class VariableScope {
+
+    public static final VariableScope EMPTY = new VariableScope(null, Collections.emptyMap());
+
+    private final VariableScope parent;
+    private final Map<String, String> values;
+
+    private VariableScope(VariableScope parent, Map<String, String> values) {
+        this.parent = parent;
+        this.values = values;
+    }
+
+    /**
+     * Returns a scope where values hide the variables of this one. values must not
+     * be changed afterwards.
+     */
+    public VariableScope with(Map<String, String> values) {
+        return values.isEmpty() ? this : new VariableScope(this, values);
+    }
+
+    public String get(String name) {
+
+        for (VariableScope scope = this; scope != null; scope = scope.parent) {
+            String value = scope.values.get(name);
+            if (value != null)
+                return value;
+        }
+
+        return null;
+    }
+}
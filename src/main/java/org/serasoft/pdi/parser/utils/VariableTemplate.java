@@ -0,0 +1,130 @@
+package org.serasoft.pdi.parser.utils;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class Name   : VariableTemplate.java
+ * Package Name : org.serasoft.pdi.parser.utils
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : A text with ${NAME} or %%NAME%% variable references, split once
+ * into its literal parts and variable names so that it can be resolved against
+ * any number of scopes without being scanned again. Variables without a value
+ * in the scope are left as they were written.
+ */
+public final class VariableTemplate {
+
+    private static final String[] NONE = new String[0];
+
+    private final String text;
+    // literals[i] comes before names[i], the last literal after the last variable
+    private final String[] literals;
+    private final String[] names;
+    // References as written, kept for the variables that have no value
+    private final String[] references;
+
+    private VariableTemplate(String text, String[] literals, String[] names, String[] references) {
+        this.text = text;
+        this.literals = literals;
+        this.names = names;
+        this.references = references;
+    }
+
+    public static VariableTemplate compile(String text) {
+
+        List<String> literals = null;
+        List<String> names = null;
+        List<String> references = null;
+        int literalStart = 0;
+        int i = 0;
+
+        while (i < text.length() - 1) {
+            String closing;
+            if (text.charAt(i) == '$' && text.charAt(i + 1) == '{')
+                closing = "}";
+            else if (text.charAt(i) == '%' && text.charAt(i + 1) == '%')
+                closing = "%%";
+            else {
+                i++;
+                continue;
+            }
+
+            int nameEnd = text.indexOf(closing, i + 2);
+            if (nameEnd <= i + 2) {
+                // Unterminated or empty reference: part of the text
+                i++;
+                continue;
+            }
+
+            if (names == null) {
+                // Lazy init parts structures
+                literals = new ArrayList<>();
+                names = new ArrayList<>();
+                references = new ArrayList<>();
+            }
+
+            int referenceEnd = nameEnd + closing.length();
+            literals.add(text.substring(literalStart, i));
+            names.add(text.substring(i + 2, nameEnd));
+            references.add(text.substring(i, referenceEnd));
+            i = referenceEnd;
+            literalStart = i;
+        }
+
+        if (names == null)
+            return new VariableTemplate(text, new String[]{text}, NONE, NONE);
+
+        literals.add(text.substring(literalStart));
+        return new VariableTemplate(text,
+                literals.toArray(new String[0]),
+                names.toArray(new String[0]),
+                references.toArray(new String[0]));
+    }
+
+    /**
+     * Tells whether the text contains any variable reference.
+     */
+    public boolean hasVariables() {
+        return names.length > 0;
+    }
+
+    public String resolve(VariableScope scope) {
+
+        if (names.length == 0)
+            return text;
+
+        StringBuilder resolved = new StringBuilder(text.length() + 64);
+        for (int i = 0; i < names.length; i++) {
+            resolved.append(literals[i]);
+            String value = scope.get(names[i]);
+            resolved.append(value != null ? value : references[i]);
+        }
+        resolved.append(literals[names.length]);
+
+        return resolved.toString();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,72 @@
+package org.serasoft.pdi.parser.utils;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+
+/**
+ * Class Name   : XMLInputFactoryHolder.java
+ * Package Name : org.serasoft.pdi.parser.utils
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Holds the StAX factory shared by every parser. The factory is
+ * looked up and configured once; after that it is only used to create readers,
+ * which is safe from concurrent threads.
+ */
+public final class XMLInputFactoryHolder {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private XMLInputFactoryHolder() {
+    }
+
+    public static XMLInputFactory getFactory() {
+        return FACTORY;
+    }
+
+    public static XMLStreamReader createXMLStreamReader(InputStream in) throws XMLStreamException {
+        return FACTORY.createXMLStreamReader(in);
+    }
+
+    /**
+     * Creates a reader for a process file, using the encoding sniffed when it was
+     * opened so that the reader does not have to detect it again.
+     */
+    public static XMLStreamReader createXMLStreamReader(ProcessFileInput in) throws XMLStreamException {
+        return in.getEncoding() != null ? FACTORY.createXMLStreamReader(in, in.getEncoding()) : FACTORY.createXMLStreamReader(in);
+    }
+
+    private static XMLInputFactory createFactory() {
+
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+
+        // Text of an element comes back as a single event
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        // PDI metadata files don't use namespaces
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        // Never resolve DTDs or external entities declared in the analyzed files
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+        return factory;
+    }
+}
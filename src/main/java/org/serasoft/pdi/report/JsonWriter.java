@@ -0,0 +1,180 @@
+package org.serasoft.pdi.report;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import java.util.Arrays;
+
+/**
+ * Class Name   : JsonWriter.java
+ * Package Name : org.serasoft.pdi.report
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Minimal streaming JSON writer appending to a StringBuilder.
+ * Separators are added as values are written; the caller is responsible for
+ * balancing objects and arrays and for writing a name before each member of
+ * an object. Output is compact, on a single line.
+ */
+public class JsonWriter {
+
+    private final StringBuilder out;
+
+    // For each open object or array, whether a value was already written in it
+    private boolean[] hasValue = new boolean[16];
+    private int level;
+    private boolean afterName;
+
+    public JsonWriter() {
+        this(new StringBuilder(512));
+    }
+
+    public JsonWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        out.append('{');
+        open();
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        level--;
+        out.append('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        out.append('[');
+        open();
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        level--;
+        out.append(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) {
+        beforeValue();
+        appendString(name);
+        out.append(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        beforeValue();
+        if (value == null)
+            out.append("null");
+        else
+            appendString(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        beforeValue();
+        out.append(value);
+        return this;
+    }
+
+    /**
+     * Writes the member only when value is not null.
+     */
+    public JsonWriter member(String name, String value) {
+        if (value != null)
+            name(name).value(value);
+        return this;
+    }
+
+    public StringBuilder getBuffer() {
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void open() {
+        if (++level == hasValue.length)
+            hasValue = Arrays.copyOf(hasValue, level * 2);
+        hasValue[level] = false;
+    }
+
+    private void beforeValue() {
+
+        if (afterName) {
+            // The value of a member: the separator came before its name
+            afterName = false;
+            return;
+        }
+
+        if (level > 0) {
+            if (hasValue[level])
+                out.append(',');
+            hasValue[level] = true;
+        }
+    }
+
+    private void appendString(String s) {
+
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        out.append("\\u");
+                        String hex = Integer.toHexString(c);
+                        for (int pad = hex.length(); pad < 4; pad++) {
+                            out.append('0');
+                        }
+                        out.append(hex);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
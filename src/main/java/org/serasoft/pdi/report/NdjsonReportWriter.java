@@ -0,0 +1,208 @@
+package org.serasoft.pdi.report;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Class Name   : NdjsonReportWriter.java
+ * Package Name : org.serasoft.pdi.report
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Writes one JSON record per line for each analyzed process, and
+ * for each process reached by following its links. Records are encoded by the
+ * caller and handed to a writer thread through a bounded queue: the analysis
+ * only waits for the disk when the queue is full, and no more than the queued
+ * records are ever held in memory. A linked process that the analysis reaches
+ * on its own as well is left to that record; the others are written when first
+ * linked, and only their paths are remembered to keep them from being written
+ * twice.
+ */
+public class NdjsonReportWriter implements Consumer<ProcessMetadata>, Closeable {
+
+    public static final String REPORT_FILENAME = "pdi-analyzer-report.ndjson";
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    // Queued by close() after the last record, never written
+    private static final String END_OF_REPORT = new String("");
+
+    private static Logger l = LoggerFactory.getLogger(NdjsonReportWriter.class);
+
+    private final File reportFile;
+    private final Writer out;
+    private final BlockingQueue<String> queue;
+    private final Thread writerThread;
+    // Linked processes already written, so that a shared sub-process gets a single record
+    private final Set<String> reported = new HashSet<>();
+    private Predicate<String> analyzed = procFilename -> false;
+
+    private volatile IOException failure;
+    private boolean closed;
+
+    public NdjsonReportWriter(File outDir) throws IOException {
+        this(outDir, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public NdjsonReportWriter(File outDir, int queueCapacity) throws IOException {
+
+        if (!outDir.isDirectory() && !outDir.mkdirs())
+            throw new IOException("Unable to create output directory " + outDir);
+
+        this.reportFile = new File(outDir, REPORT_FILENAME);
+        this.out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(reportFile.toPath()),
+                StandardCharsets.UTF_8), 64 * 1024);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(this::writeRecords, "pdi-report-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public File getReportFile() {
+        return reportFile;
+    }
+
+    /**
+     * Tells, by canonical pathname, the processes handed to accept during the
+     * run, such as the files of the walked directory. Their record is written
+     * when they are accepted, not when another process links to them.
+     */
+    public void setAnalyzed(Predicate<String> analyzed) {
+        this.analyzed = analyzed;
+    }
+
+    /**
+     * Queues the record of m and of the processes it links to that were not
+     * reported yet. Calls must not overlap, as with the analyzer's results
+     * consumer.
+     */
+    @Override
+    public void accept(ProcessMetadata m) {
+
+        if (m == null || failure != null)
+            return;
+
+        // Already written when a process reported before linked to it
+        if (m.getProcFilename() == null || !reported.contains(m.getProcFilename()))
+            write(m);
+
+        enqueueLinked(m, new IdentityHashMap<>());
+    }
+
+    /**
+     * Writes the queued records and closes the report file.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed)
+            return;
+        closed = true;
+
+        try {
+            queue.put(END_OF_REPORT);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writerThread.interrupt();
+            throw new IOException("Interrupted while writing report " + reportFile);
+        } finally {
+            out.close();
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private void enqueueLinked(ProcessMetadata m, IdentityHashMap<ProcessMetadata, Boolean> visited) {
+
+        if (visited.put(m, Boolean.TRUE) != null || m.getItems() == null)
+            return;
+
+        for (ProcessItem item : m.getItems().values()) {
+            ProcessMetadata linked = item.getLinkedProcess();
+            if (linked == null || failure != null || visited.containsKey(linked))
+                continue;
+
+            String procFilename = linked.getProcFilename();
+            if (procFilename == null || (!analyzed.test(procFilename) && reported.add(procFilename)))
+                write(linked);
+
+            enqueueLinked(linked, visited);
+        }
+    }
+
+    private void write(ProcessMetadata m) {
+        try {
+            queue.put(ProcessMetadataJson.toJson(m));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeRecords() {
+
+        try {
+            while (true) {
+                String record = queue.take();
+                if (record == END_OF_REPORT)
+                    break;
+
+                out.write(record);
+                out.write('\n');
+            }
+            out.flush();
+        } catch (IOException e) {
+            failure = e;
+            l.error("Unable to write report " + reportFile + ": " + e.getMessage());
+            // Keep draining so that the analysis never blocks on a full queue
+            drainUntilEnd();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainUntilEnd() {
+        try {
+            while (queue.take() != END_OF_REPORT) {
+                // Records are dropped once the report file is broken
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
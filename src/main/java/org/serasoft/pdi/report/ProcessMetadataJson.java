@@ -0,0 +1,196 @@
+package org.serasoft.pdi.report;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.Connection;
+import org.serasoft.pdi.parser.model.CyclicReference;
+import org.serasoft.pdi.parser.model.MissingReference;
+import org.serasoft.pdi.parser.model.Parameter;
+import org.serasoft.pdi.parser.model.ProcessHop;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.model.Variable;
+
+import java.util.Map;
+
+/**
+ * Class Name   : ProcessMetadataJson.java
+ * Package Name : org.serasoft.pdi.report
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : JSON form of the metadata collected for a process. Linked
+ * processes are referenced by their pathname, never nested, so that the size
+ * of a record only depends on its own process. Connection passwords are
+ * masked.
+ */
+public final class ProcessMetadataJson {
+
+    private static final String MASKED_PASSWORD = "********";
+
+    private ProcessMetadataJson() {
+    }
+
+    public static String toJson(ProcessMetadata m) {
+        JsonWriter json = new JsonWriter();
+        write(m, json);
+        return json.toString();
+    }
+
+    public static void write(ProcessMetadata m, JsonWriter json) {
+
+        json.beginObject();
+        json.member("type", m.getTypeEnum() != null ? m.getTypeEnum().name() : null);
+        json.member("filename", m.getProcFilename());
+        json.member("name", m.getName());
+        json.member("description", m.getDescription());
+        json.member("extendedDescription", m.getExtendedDescription());
+        json.name("transactional").value(m.isTransactional());
+        json.name("partial").value(m.isPartial());
+        json.name("truncated").value(m.isTruncated());
+
+        if (m.getParams() != null) {
+            json.name("params").beginArray();
+            for (Parameter p : m.getParams().values()) {
+                json.beginObject()
+                        .member("name", p.getName())
+                        .member("defaultValue", p.getDefaultValue())
+                        .member("description", p.getDescription())
+                        .endObject();
+            }
+            json.endArray();
+        }
+
+        if (m.getVars() != null) {
+            json.name("vars").beginArray();
+            for (Variable v : m.getVars()) {
+                json.beginObject()
+                        .member("name", v.getName())
+                        .member("scope", v.getScope())
+                        .member("value", v.getValue())
+                        .member("stepName", v.getStepName())
+                        .endObject();
+            }
+            json.endArray();
+        }
+
+        if (m.getConnections() != null) {
+            json.name("connections").beginArray();
+            for (Connection c : m.getConnections()) {
+                writeConnection(c, json);
+            }
+            json.endArray();
+        }
+
+        if (m.getItems() != null) {
+            json.name("items").beginArray();
+            for (ProcessItem item : m.getItems().values()) {
+                json.beginObject()
+                        .member("name", item.getName())
+                        .member("type", item.getType() != null ? item.getType().name() : null)
+                        .member("class", item.getItemClass())
+                        .member("description", item.getDescription())
+                        .member("linkedFilename", item.getLinkedProcFilename())
+                        .member("connection", item.getConnectionName())
+                        .endObject();
+            }
+            json.endArray();
+        }
+
+        if (m.getHops() != null) {
+            json.name("hops").beginArray();
+            for (ProcessHop hop : m.getHops()) {
+                if (hop == null)
+                    continue;
+                json.beginObject()
+                        .member("from", hop.getFrom())
+                        .member("to", hop.getTo())
+                        .endObject();
+            }
+            json.endArray();
+        }
+
+        if (m.getMissingRefs() != null) {
+            json.name("missingRefs").beginArray();
+            for (MissingReference ref : m.getMissingRefs()) {
+                json.beginObject()
+                        .member("type", ref.getType())
+                        .member("refValue", ref.getRefValue())
+                        .member("referencingProcName", ref.getReferencingProcName())
+                        .member("referencingProcFilename", ref.getReferencingProcFilename())
+                        .member("referencingStepName", ref.getReferencingStepName())
+                        .endObject();
+            }
+            json.endArray();
+        }
+
+        if (m.getCyclicRefs() != null) {
+            json.name("cyclicRefs").beginArray();
+            for (CyclicReference ref : m.getCyclicRefs()) {
+                json.beginObject()
+                        .member("refValue", ref.getRefValue())
+                        .member("referencingProcName", ref.getReferencingProcName())
+                        .member("referencingProcFilename", ref.getReferencingProcFilename())
+                        .member("referencingStepName", ref.getReferencingStepName());
+                if (ref.getCycle() != null) {
+                    json.name("cycle").beginArray();
+                    for (String procFilename : ref.getCycle()) {
+                        json.value(procFilename);
+                    }
+                    json.endArray();
+                }
+                json.endObject();
+            }
+            json.endArray();
+        }
+
+        json.endObject();
+    }
+
+    /**
+     * Returns value as it can be written out: the value of a connection password
+     * is masked, unless it is empty.
+     */
+    public static String maskedValue(String propertyName, String value) {
+        return propertyName.equals("password") && value != null && !value.isEmpty() ? MASKED_PASSWORD : value;
+    }
+
+    private static void writeConnection(Connection c, JsonWriter json) {
+
+        json.beginObject().member("name", c.getName());
+
+        if (c.getProperties() != null) {
+            json.name("properties").beginObject();
+            for (Map.Entry<String, String> property : c.getProperties().entrySet()) {
+                json.name(property.getKey()).value(maskedValue(property.getKey(), property.getValue()));
+            }
+            json.endObject();
+        }
+
+        if (c.getJdbcAttributes() != null) {
+            json.name("attributes").beginObject();
+            for (Map.Entry<String, String> attribute : c.getJdbcAttributes().entrySet()) {
+                if (attribute.getKey() != null)
+                    json.name(attribute.getKey()).value(attribute.getValue());
+            }
+            json.endObject();
+        }
+
+        json.endObject();
+    }
+}
@@ -0,0 +1,368 @@
+package org.serasoft.pdi.server;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.serasoft.pdi.analyzer.ConnectionUsageIndex;
+import org.serasoft.pdi.analyzer.DependencyGraph;
+import org.serasoft.pdi.parser.model.MissingReference;
+import org.serasoft.pdi.parser.model.Parameter;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.report.JsonWriter;
+import org.serasoft.pdi.report.ProcessMetadataJson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class Name   : AnalysisServer.java
+ * Package Name : org.serasoft.pdi.server
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Local HTTP endpoint answering queries on an analysis kept in
+ * memory, built on the JDK HTTP server. It listens on the loopback interface
+ * only and every answer is a JSON document:
+ * <ul>
+ * <li>GET /status - size of the analysis</li>
+ * <li>GET /process?file=... - metadata of a process</li>
+ * <li>GET /callers?file=...[&amp;transitive=true] - processes calling it</li>
+ * <li>GET /callees?file=...[&amp;transitive=true] - processes it calls</li>
+ * <li>GET /parameters?file=... - parameters of a process</li>
+ * <li>GET /missing-refs[?target=...] - files referenced but not found</li>
+ * <li>GET /connection-usage?name=... - items using a connection</li>
+ * </ul>
+ * Queries are answered from the current AnalysisState, which setState swaps
+ * atomically when a new analysis is available.
+ */
+public class AnalysisServer implements Closeable {
+
+    public static final int DEFAULT_THREADS = 4;
+
+    private static Logger l = LoggerFactory.getLogger(AnalysisServer.class);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile AnalysisState state;
+
+    public AnalysisServer(int port, AnalysisState state) throws IOException {
+        this(port, state, DEFAULT_THREADS);
+    }
+
+    public AnalysisServer(int port, AnalysisState state, int threads) throws IOException {
+
+        this.state = state;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newFixedThreadPool(threads, new RequestThreadFactory());
+        server.setExecutor(executor);
+
+        server.createContext("/status", new QueryHandler() {
+            @Override
+            void answer(Map<String, String> query, AnalysisState state, JsonWriter json) {
+                writeStatus(state, json);
+            }
+        });
+        server.createContext("/process", new ProcessQueryHandler() {
+            @Override
+            void answer(ProcessMetadata m, Map<String, String> query, AnalysisState state, JsonWriter json) {
+                ProcessMetadataJson.write(m, json);
+            }
+        });
+        server.createContext("/callers", new ProcessQueryHandler() {
+            @Override
+            void answer(ProcessMetadata m, Map<String, String> query, AnalysisState state, JsonWriter json) {
+                writeLinks(m, "callers", Boolean.parseBoolean(query.get("transitive")), state.getGraph(), json);
+            }
+        });
+        server.createContext("/callees", new ProcessQueryHandler() {
+            @Override
+            void answer(ProcessMetadata m, Map<String, String> query, AnalysisState state, JsonWriter json) {
+                writeLinks(m, "callees", Boolean.parseBoolean(query.get("transitive")), state.getGraph(), json);
+            }
+        });
+        server.createContext("/parameters", new ProcessQueryHandler() {
+            @Override
+            void answer(ProcessMetadata m, Map<String, String> query, AnalysisState state, JsonWriter json) {
+                writeParameters(m, json);
+            }
+        });
+        server.createContext("/missing-refs", new QueryHandler() {
+            @Override
+            void answer(Map<String, String> query, AnalysisState state, JsonWriter json) {
+                writeMissingRefs(state.getMissingRefs(), query.get("target"), json);
+            }
+        });
+        server.createContext("/connection-usage", new QueryHandler() {
+            @Override
+            void answer(Map<String, String> query, AnalysisState state, JsonWriter json) throws QueryException {
+                writeConnectionUsage(state.getConnectionUsage(), required(query, "name"), json);
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+        l.info("Analysis server listening on http://" + server.getAddress().getHostString() + ":" + getPort());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public AnalysisState getState() {
+        return state;
+    }
+
+    /**
+     * Replaces the analysis queries are answered from. Requests already running
+     * complete on the state they started with.
+     */
+    public void setState(AnalysisState state) {
+        this.state = state;
+    }
+
+    private static void writeStatus(AnalysisState state, JsonWriter json) {
+
+        json.beginObject()
+                .name("processes").value(state.processCount())
+                .name("links").value(state.getGraph().edgeCount())
+                .name("connections").value(state.getConnectionUsage().connectionCount())
+                .name("missingFiles").value(state.getMissingRefs().size())
+                .endObject();
+    }
+
+    private static void writeLinks(ProcessMetadata m, String direction, boolean transitive, DependencyGraph graph,
+                                   JsonWriter json) {
+
+        json.beginObject().member("file", m.getProcFilename());
+        json.name(direction).beginArray();
+
+        int id = graph.idOf(m.getProcFilename());
+        if (id >= 0) {
+            int[] links;
+            if (direction.equals("callers"))
+                links = transitive ? graph.transitiveCallers(id) : graph.callers(id);
+            else
+                links = transitive ? graph.transitiveCallees(id) : graph.callees(id);
+
+            for (int link : links) {
+                json.value(graph.procFilenameOf(link));
+            }
+        }
+
+        json.endArray().endObject();
+    }
+
+    private static void writeParameters(ProcessMetadata m, JsonWriter json) {
+
+        json.beginObject().member("file", m.getProcFilename()).member("name", m.getName());
+        json.name("params").beginArray();
+        if (m.getParams() != null) {
+            for (Parameter p : m.getParams().values()) {
+                json.beginObject()
+                        .member("name", p.getName())
+                        .member("defaultValue", p.getDefaultValue())
+                        .member("description", p.getDescription())
+                        .endObject();
+            }
+        }
+        json.endArray().endObject();
+    }
+
+    private static void writeMissingRefs(Map<String, List<MissingReference>> missingRefs, String target,
+                                         JsonWriter json) {
+
+        json.beginArray();
+        for (Map.Entry<String, List<MissingReference>> missing : missingRefs.entrySet()) {
+            if (target != null && !target.equals(missing.getKey()))
+                continue;
+
+            json.beginObject().member("target", missing.getKey());
+            json.name("callers").beginArray();
+            for (MissingReference caller : missing.getValue()) {
+                json.beginObject()
+                        .member("type", caller.getType())
+                        .member("procFilename", caller.getReferencingProcFilename())
+                        .member("procName", caller.getReferencingProcName())
+                        .member("item", caller.getReferencingStepName())
+                        .endObject();
+            }
+            json.endArray().endObject();
+        }
+        json.endArray();
+    }
+
+    private static void writeConnectionUsage(ConnectionUsageIndex connectionUsage, String connectionName,
+                                             JsonWriter json) {
+
+        json.beginArray();
+        for (ConnectionUsageIndex.Usage usage : connectionUsage.usagesOf(connectionName)) {
+            json.beginObject()
+                    .member("connection", usage.getConnectionName())
+                    .member("server", usage.getServer())
+                    .member("database", usage.getDatabase())
+                    .member("procFilename", usage.getProcFilename())
+                    .member("procName", usage.getProcName())
+                    .member("item", usage.getItemName())
+                    .member("class", usage.getItemClass())
+                    .endObject();
+        }
+        json.endArray();
+    }
+
+    private static String required(Map<String, String> query, String name) throws QueryException {
+
+        String value = query.get(name);
+        if (value == null || value.isEmpty())
+            throw new QueryException(400, "Missing query parameter " + name);
+        return value;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException, QueryException {
+
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null)
+            return query;
+
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            try {
+                query.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+            } catch (IllegalArgumentException e) {
+                // Malformed % escape
+                throw new QueryException(400, "Malformed query parameter " + pair);
+            }
+        }
+
+        return query;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Answers a GET request from the current state.
+     */
+    private abstract class QueryHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+
+            try {
+                if (!exchange.getRequestMethod().equals("GET"))
+                    throw new QueryException(405, "Only GET requests are supported");
+
+                JsonWriter json = new JsonWriter();
+                answer(parseQuery(exchange.getRequestURI().getRawQuery()), state, json);
+                send(exchange, 200, json.toString());
+            } catch (QueryException e) {
+                send(exchange, e.status, new JsonWriter().beginObject().member("error", e.getMessage()).endObject().toString());
+            } catch (RuntimeException e) {
+                l.error("Query " + exchange.getRequestURI() + " failed: " + e);
+                send(exchange, 500, new JsonWriter().beginObject().member("error", e.toString()).endObject().toString());
+            } finally {
+                exchange.close();
+            }
+        }
+
+        abstract void answer(Map<String, String> query, AnalysisState state, JsonWriter json) throws QueryException;
+    }
+
+    /**
+     * Answers a query about the process named by the file parameter.
+     */
+    private abstract class ProcessQueryHandler extends QueryHandler {
+
+        @Override
+        void answer(Map<String, String> query, AnalysisState state, JsonWriter json) throws QueryException {
+
+            String file = required(query, "file");
+            ProcessMetadata m = state.getProcess(file);
+            if (m == null) {
+                // Processes are known by canonical pathname
+                try {
+                    m = state.getProcess(new File(file).getCanonicalPath());
+                } catch (IOException e) {
+                    m = null;
+                }
+            }
+            if (m == null)
+                throw new QueryException(404, "Process " + file + " is not part of the analysis");
+
+            answer(m, query, state, json);
+        }
+
+        abstract void answer(ProcessMetadata m, Map<String, String> query, AnalysisState state, JsonWriter json);
+    }
+
+    private static class QueryException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        QueryException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static class RequestThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "pdi-analyzer-server-" + counter.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.serasoft.pdi.server;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.analyzer.ConnectionUsageIndex;
+import org.serasoft.pdi.analyzer.DependencyGraph;
+import org.serasoft.pdi.analyzer.MissingReferenceCollector;
+import org.serasoft.pdi.parser.model.MissingReference;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Class Name   : AnalysisState.java
+ * Package Name : org.serasoft.pdi.server
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Everything the query server answers from, built once from the
+ * results of an analysis: the metadata of each process by canonical pathname,
+ * the dependency graph, the missing references grouped by target and the
+ * connection usage index. It is never changed after it is built, so request
+ * threads read it without locking and a new analysis simply replaces it. When
+ * a few files change, update derives the next state from the current one:
+ * only the dependency graph, whose arrays cannot grow, is rebuilt, and from
+ * its own edges rather than from the metadata. The connection usage index is
+ * concurrent and is patched in place, so the replaced state sees the change too.
+ */
+public class AnalysisState {
+
+    public static final AnalysisState EMPTY = build(Collections.emptyList());
+
+    private final Map<String, ProcessMetadata> processes;
+    private final DependencyGraph graph;
+    private final SortedMap<String, List<MissingReference>> missingRefs;
+    private final ConnectionUsageIndex connectionUsage;
+
+    private AnalysisState(Map<String, ProcessMetadata> processes,
+                          DependencyGraph graph,
+                          SortedMap<String, List<MissingReference>> missingRefs,
+                          ConnectionUsageIndex connectionUsage) {
+        this.processes = processes;
+        this.graph = graph;
+        this.missingRefs = missingRefs;
+        this.connectionUsage = connectionUsage;
+    }
+
+    /**
+     * Builds the state from the analyzed processes, including the processes
+     * reached by following their links.
+     */
+    public static AnalysisState build(Collection<ProcessMetadata> results) {
+
+        Map<String, ProcessMetadata> processes = new HashMap<>();
+        DependencyGraph.Builder graphBuilder = new DependencyGraph.Builder();
+        MissingReferenceCollector missingRefCollector = new MissingReferenceCollector();
+        ConnectionUsageIndex connectionUsage = new ConnectionUsageIndex();
+
+        for (ProcessMetadata m : results) {
+            addProcess(m, processes);
+            graphBuilder.addProcess(m);
+            missingRefCollector.accept(m);
+            connectionUsage.accept(m);
+        }
+
+        return new AnalysisState(processes, graphBuilder.build(), missingRefCollector.summary(), connectionUsage);
+    }
+
+    /**
+     * Returns the state with the changed processes added or replaced and the
+     * removed ones dropped. The cost depends on the processes that changed, apart
+     * from copying the process map and the edges of the dependency graph.
+     */
+    public AnalysisState update(Collection<ProcessMetadata> changed, Collection<String> removed) {
+
+        Map<String, ProcessMetadata> updated = new HashMap<>(processes);
+        // Previous metadata of every process added, replaced or removed, null when it is new
+        Map<String, ProcessMetadata> replaced = new HashMap<>();
+
+        for (String procFilename : removed) {
+            ProcessMetadata previous = updated.remove(procFilename);
+            if (previous != null)
+                replaced.put(procFilename, previous);
+        }
+        for (ProcessMetadata m : changed) {
+            if (m.getProcFilename() != null)
+                replaced.put(m.getProcFilename(), updated.put(m.getProcFilename(), m));
+        }
+        // Processes linked by the changed ones and not known yet, such as a new file
+        for (ProcessMetadata m : changed) {
+            if (m.getItems() != null) {
+                for (ProcessItem item : m.getItems().values()) {
+                    addLinkedProcess(item.getLinkedProcess(), updated, replaced);
+                }
+            }
+        }
+
+        DependencyGraph.Builder graphBuilder = new DependencyGraph.Builder().addGraph(graph, replaced.keySet());
+        for (String procFilename : replaced.keySet()) {
+            ProcessMetadata m = updated.get(procFilename);
+            if (m != null)
+                graphBuilder.addProcess(m);
+        }
+
+        SortedMap<String, List<MissingReference>> updatedMissingRefs = new TreeMap<>(missingRefs);
+        for (Map.Entry<String, ProcessMetadata> process : replaced.entrySet()) {
+            ProcessMetadata previous = process.getValue();
+            ProcessMetadata current = updated.get(process.getKey());
+
+            replaceMissingRefs(updatedMissingRefs, previous, current);
+            if (previous != null)
+                connectionUsage.removeItemsOf(previous);
+            if (current != null)
+                connectionUsage.addItemsOf(current);
+        }
+
+        return new AnalysisState(updated, graphBuilder.build(), updatedMissingRefs, connectionUsage);
+    }
+
+    /**
+     * Returns the metadata of the process with the given canonical pathname, or null.
+     */
+    public ProcessMetadata getProcess(String procFilename) {
+        return processes.get(procFilename);
+    }
+
+    public int processCount() {
+        return processes.size();
+    }
+
+    public DependencyGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Missing files sorted by path, each with the items that reference it.
+     */
+    public SortedMap<String, List<MissingReference>> getMissingRefs() {
+        return missingRefs;
+    }
+
+    public ConnectionUsageIndex getConnectionUsage() {
+        return connectionUsage;
+    }
+
+    private static void addLinkedProcess(ProcessMetadata m,
+                                         Map<String, ProcessMetadata> processes,
+                                         Map<String, ProcessMetadata> replaced) {
+
+        if (m == null || m.getProcFilename() == null || processes.putIfAbsent(m.getProcFilename(), m) != null)
+            return;
+
+        replaced.put(m.getProcFilename(), null);
+        if (m.getItems() != null) {
+            for (ProcessItem item : m.getItems().values()) {
+                addLinkedProcess(item.getLinkedProcess(), processes, replaced);
+            }
+        }
+    }
+
+    /**
+     * Swaps the missing references of previous for those of current, copying
+     * only the lists of the targets involved.
+     */
+    private static void replaceMissingRefs(SortedMap<String, List<MissingReference>> missingRefs,
+                                           ProcessMetadata previous,
+                                           ProcessMetadata current) {
+
+        Set<MissingReference> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<String> targets = new HashSet<>();
+        if (previous != null && previous.getMissingRefs() != null) {
+            for (MissingReference ref : previous.getMissingRefs()) {
+                gone.add(ref);
+                targets.add(ref.getRefValue());
+            }
+        }
+
+        MissingReferenceCollector added = new MissingReferenceCollector();
+        if (current != null && current.getMissingRefs() != null) {
+            for (MissingReference ref : current.getMissingRefs()) {
+                added.add(ref);
+            }
+        }
+        SortedMap<String, List<MissingReference>> addedRefs = added.summary();
+        targets.addAll(addedRefs.keySet());
+
+        for (String target : targets) {
+            if (target == null)
+                continue;
+
+            MissingReferenceCollector callers = new MissingReferenceCollector();
+            for (MissingReference ref : missingRefs.getOrDefault(target, Collections.emptyList())) {
+                if (!gone.contains(ref))
+                    callers.add(ref);
+            }
+            for (MissingReference ref : addedRefs.getOrDefault(target, Collections.emptyList())) {
+                callers.add(ref);
+            }
+
+            List<MissingReference> targetCallers = callers.summary().get(target);
+            if (targetCallers != null)
+                missingRefs.put(target, targetCallers);
+            else
+                missingRefs.remove(target);
+        }
+    }
+
+    private static void addProcess(ProcessMetadata m, Map<String, ProcessMetadata> processes) {
+
+        // Linked processes are shared between callers: visit each one once
+        if (m == null || m.getProcFilename() == null || processes.putIfAbsent(m.getProcFilename(), m) != null)
+            return;
+
+        if (m.getItems() != null) {
+            for (ProcessItem item : m.getItems().values()) {
+                addProcess(item.getLinkedProcess(), processes);
+            }
+        }
+    }
+}
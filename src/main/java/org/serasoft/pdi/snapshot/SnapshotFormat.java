@@ -0,0 +1,68 @@
+package org.serasoft.pdi.snapshot;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+/**
+ * Class Name   : SnapshotFormat.java
+ * Package Name : org.serasoft.pdi.snapshot
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Layout of analysis snapshot files. A snapshot starts with the
+ * magic bytes and the format version, followed by tagged records:
+ * <pre>
+ *   snapshot := MAGIC version:varint record* END
+ *   record   := PROCESS process | ROOT processId:varint
+ * </pre>
+ * Processes get ids in the order they are written, and a process is always
+ * written after the processes it links to, so that every reference points
+ * backwards. Strings go through a dictionary built while writing: a string
+ * is written in full the first time and as its dictionary index afterwards.
+ * Counts, ids and string references are unsigned varints. Passwords are
+ * written masked, connections keep the fingerprint of their actual settings.
+ */
+final class SnapshotFormat {
+
+    static final byte[] MAGIC = {'P', 'D', 'I', 'S'};
+    static final int VERSION = 4;
+
+    // Record tags
+    static final int END = 0;
+    static final int PROCESS = 1;
+    static final int ROOT = 2;
+
+    // String references: null, a new string given in full, or DICTIONARY_BASE + index
+    static final int NULL_STRING = 0;
+    static final int NEW_STRING = 1;
+    static final int DICTIONARY_BASE = 2;
+
+    // Collection sizes are written plus one, zero standing for a null collection
+    static final int NULL_COLLECTION = 0;
+
+    // Process flags
+    static final int FLAG_TRANSACTIONAL = 1;
+    static final int FLAG_TRUNCATED = 1 << 1;
+    static final int FLAG_PARTIAL = 1 << 2;
+    static final int FLAG_CYCLE_CUT = 1 << 3;
+
+    // Linked process reference when there is none, ids are written plus one
+    static final int NO_PROCESS = 0;
+
+    private SnapshotFormat() {
+    }
+}
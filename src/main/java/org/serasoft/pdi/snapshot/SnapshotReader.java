@@ -0,0 +1,308 @@
+package org.serasoft.pdi.snapshot;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.Connection;
+import org.serasoft.pdi.parser.model.CyclicReference;
+import org.serasoft.pdi.parser.model.MissingReference;
+import org.serasoft.pdi.parser.model.Parameter;
+import org.serasoft.pdi.parser.model.ProcessHop;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessItemTypeEnum;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.model.ProcessTypeEnum;
+import org.serasoft.pdi.parser.model.Variable;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class Name   : SnapshotReader.java
+ * Package Name : org.serasoft.pdi.snapshot
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Reads a snapshot written by SnapshotWriter back into the
+ * metadata model. Links between processes are restored, a process linked by
+ * several others being a single shared instance as it was at analysis time.
+ */
+public class SnapshotReader {
+
+    private final InputStream in;
+    private String[] dictionary = new String[256];
+    private int dictionarySize;
+    private ProcessMetadata[] processes = new ProcessMetadata[256];
+    private int processCount;
+
+    public SnapshotReader(InputStream in) {
+        this.in = new BufferedInputStream(in, 64 * 1024);
+    }
+
+    /**
+     * Reads the whole snapshot and returns its root processes, in the order
+     * they were written.
+     */
+    public List<ProcessMetadata> read() throws IOException {
+
+        byte[] magic = new byte[SnapshotFormat.MAGIC.length];
+        readFully(magic);
+        if (!Arrays.equals(magic, SnapshotFormat.MAGIC))
+            throw new IOException("Not a PDI analyzer snapshot");
+
+        int version = readVarint();
+        if (version != SnapshotFormat.VERSION)
+            throw new IOException("Unsupported snapshot version " + version);
+
+        List<ProcessMetadata> roots = new ArrayList<>();
+        while (true) {
+            int tag = readVarint();
+            if (tag == SnapshotFormat.END) {
+                break;
+            } else if (tag == SnapshotFormat.PROCESS) {
+                addProcess(readProcess());
+            } else if (tag == SnapshotFormat.ROOT) {
+                roots.add(process(readVarint()));
+            } else {
+                throw new IOException("Corrupted snapshot: unknown record " + tag);
+            }
+        }
+
+        return roots;
+    }
+
+    private ProcessMetadata readProcess() throws IOException {
+
+        ProcessMetadata m = new ProcessMetadata();
+
+        String type = readString();
+        m.setTypeEnum(type != null ? ProcessTypeEnum.valueOf(type) : null);
+        m.setProcFilename(readString());
+        m.setName(readString());
+        m.setDescription(readString());
+        m.setExtendedDescription(readString());
+
+        int flags = readVarint();
+        m.setTransactional((flags & SnapshotFormat.FLAG_TRANSACTIONAL) != 0 ? "Y" : null);
+        m.setTruncated((flags & SnapshotFormat.FLAG_TRUNCATED) != 0);
+        m.setPartial((flags & SnapshotFormat.FLAG_PARTIAL) != 0);
+        m.setCycleCut((flags & SnapshotFormat.FLAG_CYCLE_CUT) != 0);
+
+        int size = readSize();
+        if (size >= 0) {
+            Map<String, Parameter> params = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                Parameter p = new Parameter(readString());
+                p.setDefaultValue(readString());
+                p.setDescription(readString());
+                params.put(key, p);
+            }
+            m.setParams(params);
+        }
+
+        size = readSize();
+        if (size >= 0) {
+            List<Variable> vars = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                Variable v = new Variable(readString(), readString());
+                v.setScope(readString());
+                v.setValue(readString());
+                vars.add(v);
+            }
+            m.setVars(vars);
+        }
+
+        size = readSize();
+        if (size >= 0) {
+            List<Connection> connections = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String name = readString();
+                String procFile = readString();
+                Connection c = new Connection(name, procFile != null ? new File(procFile) : null);
+                c.setProperties(readStringMap());
+                c.setJdbcAttributes(readStringMap());
+                // Passwords are masked, the fingerprint of the original settings is kept
+                c.setFingerprint(readLong());
+                connections.add(c);
+            }
+            m.setConnections(connections);
+        }
+
+        size = readSize();
+        if (size >= 0) {
+            Map<String, ProcessItem> items = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                String itemType = readString();
+                String itemClass = readString();
+                ProcessItem item = new ProcessItem(itemType != null ? ProcessItemTypeEnum.valueOf(itemType) : null,
+                        itemClass,
+                        readString());
+                item.setDescription(readString());
+                item.setLinkedProcFilename(readString());
+                item.setConnectionName(readString());
+                int linkedId = readVarint();
+                if (linkedId != SnapshotFormat.NO_PROCESS)
+                    item.setLinkedProcess(process(linkedId - 1));
+                items.put(key, item);
+            }
+            m.setItems(items);
+        }
+
+        size = readSize();
+        if (size >= 0) {
+            List<ProcessHop> hops = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                hops.add(readVarint() != 0 ? new ProcessHop(readString(), readString(), readString()) : null);
+            }
+            m.setHops(hops);
+        }
+
+        size = readSize();
+        if (size >= 0) {
+            List<MissingReference> missingRefs = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                MissingReference ref = new MissingReference(readString(), readString(), readString());
+                ref.setType(readString());
+                ref.setRefValue(readString());
+                missingRefs.add(ref);
+            }
+            m.setMissingRefs(missingRefs);
+        }
+
+        size = readSize();
+        if (size >= 0) {
+            List<CyclicReference> cyclicRefs = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                CyclicReference ref = new CyclicReference(readString(), readString(), readString());
+                ref.setRefValue(readString());
+                int cycleSize = readSize();
+                if (cycleSize >= 0) {
+                    List<String> cycle = new ArrayList<>(cycleSize);
+                    for (int j = 0; j < cycleSize; j++) {
+                        cycle.add(readString());
+                    }
+                    ref.setCycle(cycle);
+                }
+                cyclicRefs.add(ref);
+            }
+            m.setCyclicRefs(cyclicRefs);
+        }
+
+        return m;
+    }
+
+    private HashMap<String, String> readStringMap() throws IOException {
+
+        int size = readSize();
+        if (size < 0)
+            return null;
+
+        HashMap<String, String> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(readString(), readString());
+        }
+        return map;
+    }
+
+    private void addProcess(ProcessMetadata m) {
+        if (processCount == processes.length)
+            processes = Arrays.copyOf(processes, processCount * 2);
+        processes[processCount++] = m;
+    }
+
+    private ProcessMetadata process(int id) throws IOException {
+        if (id < 0 || id >= processCount)
+            throw new IOException("Corrupted snapshot: unknown process " + id);
+        return processes[id];
+    }
+
+    private int readSize() throws IOException {
+        return readVarint() - 1;
+    }
+
+    private String readString() throws IOException {
+
+        int ref = readVarint();
+        if (ref == SnapshotFormat.NULL_STRING)
+            return null;
+
+        if (ref != SnapshotFormat.NEW_STRING) {
+            int index = ref - SnapshotFormat.DICTIONARY_BASE;
+            if (index >= dictionarySize)
+                throw new IOException("Corrupted snapshot: unknown string " + index);
+            return dictionary[index];
+        }
+
+        byte[] bytes = new byte[readVarint()];
+        readFully(bytes);
+        String s = new String(bytes, StandardCharsets.UTF_8);
+
+        if (dictionarySize == dictionary.length)
+            dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+        dictionary[dictionarySize++] = s;
+
+        return s;
+    }
+
+    private long readLong() throws IOException {
+
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException("Truncated snapshot");
+            value = value << 8 | b;
+        }
+        return value;
+    }
+
+    private int readVarint() throws IOException {
+
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException("Truncated snapshot");
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Corrupted snapshot: varint too long");
+    }
+
+    private void readFully(byte[] bytes) throws IOException {
+
+        int read = 0;
+        while (read < bytes.length) {
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0)
+                throw new EOFException("Truncated snapshot");
+            read += n;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package org.serasoft.pdi.snapshot;
+
+/*
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+import org.serasoft.pdi.parser.model.Connection;
+import org.serasoft.pdi.parser.model.CyclicReference;
+import org.serasoft.pdi.parser.model.MissingReference;
+import org.serasoft.pdi.parser.model.Parameter;
+import org.serasoft.pdi.parser.model.ProcessHop;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.model.Variable;
+import org.serasoft.pdi.report.ProcessMetadataJson;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Class Name   : SnapshotWriter.java
+ * Package Name : org.serasoft.pdi.snapshot
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  : Writes analysis results in the binary snapshot format, one
+ * process at a time as results are accepted. A process linked by several
+ * others is written once and referenced by id; only its id and the string
+ * dictionary are kept in memory. A write failure while accepting results does
+ * not stop the analysis: the rest of the results are ignored and the failure
+ * is thrown by close.
+ */
+public class SnapshotWriter implements Consumer<ProcessMetadata>, Closeable {
+
+    private final OutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    // Ids of the processes already written, by pathname
+    private final Map<String, Integer> processIds = new HashMap<>();
+    private int nextProcessId;
+    private IOException failure;
+
+    public SnapshotWriter(OutputStream out) throws IOException {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.out.write(SnapshotFormat.MAGIC);
+        writeVarint(SnapshotFormat.VERSION);
+    }
+
+    /**
+     * Writes m, and the processes it links to, as a root of the snapshot.
+     */
+    @Override
+    public void accept(ProcessMetadata m) {
+
+        if (failure != null)
+            return;
+
+        try {
+            write(m);
+        } catch (IOException e) {
+            // Not thrown here: the results are accepted on a worker thread
+            failure = e;
+        }
+    }
+
+    public void write(ProcessMetadata m) throws IOException {
+
+        int id = writeProcess(m, new IdentityHashMap<>());
+        writeVarint(SnapshotFormat.ROOT);
+        writeVarint(id);
+    }
+
+    public void writeAll(Collection<ProcessMetadata> roots) throws IOException {
+        for (ProcessMetadata m : roots) {
+            write(m);
+        }
+    }
+
+    /**
+     * Writes the end of the snapshot and closes the underlying stream. Throws
+     * the failure met while accepting results, if any: the snapshot is then
+     * incomplete.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (failure == null)
+                writeVarint(SnapshotFormat.END);
+        } finally {
+            out.close();
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Writes the processes linked by m first, then m, and returns the id of m.
+     * A link back to a process still being written, which the parsers never
+     * produce, is dropped.
+     */
+    private int writeProcess(ProcessMetadata m, IdentityHashMap<ProcessMetadata, Integer> inProgress) throws IOException {
+
+        if (m.getProcFilename() != null) {
+            Integer id = processIds.get(m.getProcFilename());
+            if (id != null)
+                return id;
+        }
+
+        inProgress.put(m, -1);
+        Map<ProcessItem, Integer> linkedIds = new IdentityHashMap<>();
+        if (m.getItems() != null) {
+            for (ProcessItem item : m.getItems().values()) {
+                ProcessMetadata linked = item.getLinkedProcess();
+                if (linked != null && !inProgress.containsKey(linked))
+                    linkedIds.put(item, writeProcess(linked, inProgress));
+            }
+        }
+        inProgress.remove(m);
+
+        writeVarint(SnapshotFormat.PROCESS);
+        writeString(m.getTypeEnum() != null ? m.getTypeEnum().name() : null);
+        writeString(m.getProcFilename());
+        writeString(m.getName());
+        writeString(m.getDescription());
+        writeString(m.getExtendedDescription());
+        writeVarint((m.isTransactional() ? SnapshotFormat.FLAG_TRANSACTIONAL : 0)
+                | (m.isTruncated() ? SnapshotFormat.FLAG_TRUNCATED : 0)
+                | (m.isPartial() ? SnapshotFormat.FLAG_PARTIAL : 0)
+                | (m.isCycleCut() ? SnapshotFormat.FLAG_CYCLE_CUT : 0));
+
+        writeParams(m.getParams());
+
+        writeSize(m.getVars() != null ? m.getVars().size() : -1);
+        if (m.getVars() != null) {
+            for (Variable v : m.getVars()) {
+                writeString(v.getStepName());
+                writeString(v.getName());
+                writeString(v.getScope());
+                writeString(v.getValue());
+            }
+        }
+
+        writeSize(m.getConnections() != null ? m.getConnections().size() : -1);
+        if (m.getConnections() != null) {
+            for (Connection c : m.getConnections()) {
+                writeString(c.getName());
+                writeString(c.getPdiProcFile() != null ? c.getPdiProcFile().getPath() : null);
+                writeProperties(c.getProperties());
+                writeStringMap(c.getJdbcAttributes());
+                // Taken before masking, so that connections differing by password only still differ
+                writeLong(c.getFingerprint());
+            }
+        }
+
+        writeSize(m.getItems() != null ? m.getItems().size() : -1);
+        if (m.getItems() != null) {
+            for (Map.Entry<String, ProcessItem> entry : m.getItems().entrySet()) {
+                ProcessItem item = entry.getValue();
+                Integer linkedId = linkedIds.get(item);
+                writeString(entry.getKey());
+                writeString(item.getType() != null ? item.getType().name() : null);
+                writeString(item.getItemClass());
+                writeString(item.getName());
+                writeString(item.getDescription());
+                writeString(item.getLinkedProcFilename());
+                writeString(item.getConnectionName());
+                writeVarint(linkedId != null ? linkedId + 1 : SnapshotFormat.NO_PROCESS);
+            }
+        }
+
+        writeSize(m.getHops() != null ? m.getHops().size() : -1);
+        if (m.getHops() != null) {
+            for (ProcessHop hop : m.getHops()) {
+                // Incomplete hops are kept in the list as nulls
+                writeVarint(hop != null ? 1 : 0);
+                if (hop != null) {
+                    writeString(hop.getFrom());
+                    writeString(hop.getTo());
+                    writeString(hop.getName());
+                }
+            }
+        }
+
+        writeSize(m.getMissingRefs() != null ? m.getMissingRefs().size() : -1);
+        if (m.getMissingRefs() != null) {
+            for (MissingReference ref : m.getMissingRefs()) {
+                writeString(ref.getReferencingStepName());
+                writeString(ref.getReferencingProcName());
+                writeString(ref.getReferencingProcFilename());
+                writeString(ref.getType());
+                writeString(ref.getRefValue());
+            }
+        }
+
+        writeSize(m.getCyclicRefs() != null ? m.getCyclicRefs().size() : -1);
+        if (m.getCyclicRefs() != null) {
+            for (CyclicReference ref : m.getCyclicRefs()) {
+                writeString(ref.getReferencingStepName());
+                writeString(ref.getReferencingProcName());
+                writeString(ref.getReferencingProcFilename());
+                writeString(ref.getRefValue());
+                writeSize(ref.getCycle() != null ? ref.getCycle().size() : -1);
+                if (ref.getCycle() != null) {
+                    for (String procFilename : ref.getCycle()) {
+                        writeString(procFilename);
+                    }
+                }
+            }
+        }
+
+        int id = nextProcessId++;
+        if (m.getProcFilename() != null)
+            processIds.put(m.getProcFilename(), id);
+
+        return id;
+    }
+
+    private void writeParams(Map<String, Parameter> params) throws IOException {
+
+        writeSize(params != null ? params.size() : -1);
+        if (params == null)
+            return;
+
+        for (Map.Entry<String, Parameter> entry : params.entrySet()) {
+            writeString(entry.getKey());
+            writeString(entry.getValue().getName());
+            writeString(entry.getValue().getDefaultValue());
+            writeString(entry.getValue().getDescription());
+        }
+    }
+
+    private void writeProperties(Map<String, String> properties) throws IOException {
+
+        writeSize(properties != null ? properties.size() : -1);
+        if (properties == null)
+            return;
+
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            writeString(property.getKey());
+            writeString(ProcessMetadataJson.maskedValue(property.getKey(), property.getValue()));
+        }
+    }
+
+    private void writeStringMap(Map<String, String> map) throws IOException {
+
+        writeSize(map != null ? map.size() : -1);
+        if (map == null)
+            return;
+
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(entry.getKey());
+            writeString(entry.getValue());
+        }
+    }
+
+    private void writeSize(int size) throws IOException {
+        writeVarint(size < 0 ? SnapshotFormat.NULL_COLLECTION : size + 1);
+    }
+
+    private void writeString(String s) throws IOException {
+
+        if (s == null) {
+            writeVarint(SnapshotFormat.NULL_STRING);
+            return;
+        }
+
+        Integer index = dictionary.get(s);
+        if (index != null) {
+            writeVarint(SnapshotFormat.DICTIONARY_BASE + index);
+            return;
+        }
+
+        dictionary.put(s, dictionary.size());
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(SnapshotFormat.NEW_STRING);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeLong(long value) throws IOException {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,107 @@
+package org.serasoft.pdi;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : PDIAnalyzerTest.java
+ * Package Name : org.serasoft.pdi
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class PDIAnalyzerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testParallelResultsFollowWalkOrder() throws Exception {
+
+        writeTransformations(40);
+
+        List<String> expected = names(new PDIAnalyzer(1).analyzeFiles(tmp.getRoot().getPath(), true, false));
+        List<String> actual = names(new PDIAnalyzer(4).analyzeFiles(tmp.getRoot().getPath(), true, false));
+
+        assertEquals(40, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testFailedFileIsSkipped() throws Exception {
+
+        writeTransformations(10);
+
+        PDIAnalyzer analyzer = new PDIAnalyzer(4);
+        analyzer.addWorkerConsumer(m -> {
+            if (m.getName().equals("trans_5"))
+                throw new IllegalStateException("Broken consumer");
+        });
+
+        List<String> expected = names(new PDIAnalyzer(1).analyzeFiles(tmp.getRoot().getPath(), true, false));
+        expected.remove("trans_5");
+
+        assertEquals(expected, names(analyzer.analyzeFiles(tmp.getRoot().getPath(), true, false)));
+    }
+
+    @Test
+    public void testInterruptedWalkStops() throws Exception {
+
+        writeTransformations(10);
+
+        Thread.currentThread().interrupt();
+        List<ProcessMetadata> results = new PDIAnalyzer(4).analyzeFiles(tmp.getRoot().getPath(), true, false);
+
+        // The interrupt is kept for the caller
+        assertTrue(Thread.interrupted());
+        assertEquals(0, results.size());
+    }
+
+    private void writeTransformations(int count) throws Exception {
+
+        for (int i = 0; i < count; i++) {
+            File f = new File(tmp.getRoot(), "trans_" + i + ".ktr");
+            Files.write(f.toPath(), ("<transformation><info><name>trans_" + i + "</name></info>"
+                    + "<step><name>read</name><type>Dummy</type></step></transformation>")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static List<String> names(List<ProcessMetadata> results) {
+
+        List<String> names = new ArrayList<>();
+        for (ProcessMetadata m : results) {
+            names.add(m.getName());
+        }
+        return names;
+    }
+}
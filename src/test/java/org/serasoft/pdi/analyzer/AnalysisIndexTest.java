@@ -0,0 +1,163 @@
+package org.serasoft.pdi.analyzer;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.JobParser;
+import org.serasoft.pdi.parser.ParseCache;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Class Name   : AnalysisIndexTest.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class AnalysisIndexTest {
+
+    private static final String SETTINGS = "followSymlinks=true";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File outDir;
+    private File main;
+    private File load;
+
+    @Before
+    public void setUp() throws Exception {
+
+        outDir = tmp.newFolder("out");
+        main = new File(tmp.getRoot(), "main.kjb");
+        load = new File(tmp.getRoot(), "load.kjb");
+        write(main, "<job><name>main</name><entries>"
+                + "<entry><name>load</name><type>JOB</type><filename>${Internal.Entry.Current.Directory}/load.kjb</filename></entry>"
+                + "</entries></job>", 1000000L);
+        write(load, "<job><name>load</name></job>", 1000000L);
+    }
+
+    @Test
+    public void testUnchangedFileIsReused() throws Exception {
+
+        index(main);
+
+        ParseCache parseCache = new ParseCache();
+        ProcessMetadata m = AnalysisIndex.load(outDir, SETTINGS).lookup(main, parseCache);
+
+        assertNotNull(m);
+        assertNotNull(m.getItems().get("load").getLinkedProcess());
+        // The linked process is ready for a caller parsed again
+        assertNotNull(parseCache.get(ParseCache.Key.of(load)));
+    }
+
+    @Test
+    public void testChangedFileIsParsedAgain() throws Exception {
+
+        index(main);
+        main.setLastModified(2000000L);
+        assertNull(lookup(main));
+
+        // Same modification time, other size
+        index(main);
+        write(main, "<job><name>main</name></job>", 2000000L);
+        assertNull(lookup(main));
+    }
+
+    @Test
+    public void testChangedDependencyInvalidatesCaller() throws Exception {
+
+        index(main);
+        write(load, "<job><name>load</name><entries/></job>", 1000000L);
+
+        assertNull(lookup(main));
+    }
+
+    @Test
+    public void testOtherSettingsAreIgnored() throws Exception {
+
+        index(main);
+
+        assertEquals(1, AnalysisIndex.load(outDir, SETTINGS).size());
+        assertEquals(0, AnalysisIndex.load(outDir, "followSymlinks=false").size());
+    }
+
+    @Test
+    public void testDeletedFilesArePruned() throws Exception {
+
+        AnalysisIndex index = AnalysisIndex.load(outDir, SETTINGS);
+        index.update(main, new JobParser(main, 0, true).parse());
+        index.update(load, new JobParser(load, 0, true).parse());
+        index.save(true);
+        assertEquals(2, AnalysisIndex.load(outDir, SETTINGS).size());
+
+        index = AnalysisIndex.load(outDir, SETTINGS);
+        index.lookup(main, new ParseCache());
+        index.save(false);
+        assertEquals(2, AnalysisIndex.load(outDir, SETTINGS).size());
+
+        index = AnalysisIndex.load(outDir, SETTINGS);
+        index.lookup(main, new ParseCache());
+        index.save(true);
+        assertEquals(1, AnalysisIndex.load(outDir, SETTINGS).size());
+    }
+
+    @Test
+    public void testUnexpectedClassIsNotRead() throws Exception {
+
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                Files.newOutputStream(new File(outDir, AnalysisIndex.INDEX_FILENAME).toPath()))) {
+            out.writeInt(AnalysisIndex.FORMAT_VERSION);
+            out.writeUTF(SETTINGS);
+            out.writeObject(Collections.singletonMap(main.getCanonicalPath(), new Date()));
+        }
+
+        assertEquals(0, AnalysisIndex.load(outDir, SETTINGS).size());
+    }
+
+    private void index(File procFile) throws Exception {
+
+        AnalysisIndex index = AnalysisIndex.load(outDir, SETTINGS);
+        index.update(procFile, new JobParser(procFile, 0, true).parse());
+        index.save(true);
+    }
+
+    private ProcessMetadata lookup(File procFile) {
+        return AnalysisIndex.load(outDir, SETTINGS).lookup(procFile, new ParseCache());
+    }
+
+    private static void write(File f, String content, long lastModified) throws Exception {
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        f.setLastModified(lastModified);
+    }
+}
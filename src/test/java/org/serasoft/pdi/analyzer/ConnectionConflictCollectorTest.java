@@ -0,0 +1,87 @@
+package org.serasoft.pdi.analyzer;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.TransformationParser;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : ConnectionConflictCollectorTest.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class ConnectionConflictCollectorTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testConflictingDefinitions() throws Exception {
+
+        ConnectionConflictCollector collector = new ConnectionConflictCollector();
+        // Same settings, written with different spacing
+        collector.accept(parse("a.ktr", "<connection><name>DWH</name><server>dwh.local</server>"
+                + "<password>secret</password></connection>"));
+        collector.accept(parse("b.ktr", "<connection><name>DWH</name><server> dwh.local </server>"
+                + "<password>secret</password></connection>"));
+        collector.accept(parse("c.ktr", "<connection><name>DWH</name><server>dwh-test.local</server>"
+                + "<password>other</password></connection>"
+                + "<connection><name>STAGE</name><server>stage.local</server></connection>"));
+
+        assertEquals(2, collector.nameCount());
+        assertEquals(3, collector.definitionCount());
+        assertEquals(Collections.singletonList("DWH"), collector.conflictingNames());
+
+        List<ConnectionConflictCollector.Definition> definitions = collector.definitionsOf("DWH");
+        assertEquals(2, definitions.get(0).getFileCount());
+        assertEquals(1, definitions.get(1).getFileCount());
+
+        StringWriter out = new StringWriter();
+        collector.export(out);
+        String[] records = out.toString().split("\n");
+        assertEquals(1, records.length);
+        assertTrue(records[0].startsWith("{\"connection\":\"DWH\",\"definitions\":[{\"fingerprint\":\""));
+        assertTrue(records[0].contains("\"differences\":{\"password\":\"********\",\"server\":\"dwh-test.local\"}"));
+        assertFalse(records[0].contains("other"));
+    }
+
+    private ProcessMetadata parse(String filename, String connections) throws Exception {
+
+        File trans = tmp.newFile(filename);
+        Files.write(trans.toPath(), ("<transformation><info><name>" + filename + "</name></info>"
+                + connections + "</transformation>").getBytes(StandardCharsets.UTF_8));
+        return new TransformationParser(trans, 0, false).parse();
+    }
+}
@@ -0,0 +1,79 @@
+package org.serasoft.pdi.analyzer;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.TransformationParser;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : ConnectionUsageIndexTest.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class ConnectionUsageIndexTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testUsagesOfConnection() throws Exception {
+
+        File trans = tmp.newFile("load.ktr");
+        Files.write(trans.toPath(), ("<transformation><info><name>load</name></info>"
+                + "<connection><name>DWH_PROD</name><server>dwh.local</server><database>dwh</database></connection>"
+                + "<step><name>read</name><type>TableInput</type><connection>DWH_PROD</connection></step>"
+                + "<step><name>write</name><type>TableOutput</type><connection>DWH_PROD</connection></step>"
+                + "<step><name>log</name><type>WriteToLog</type></step>"
+                + "</transformation>").getBytes(StandardCharsets.UTF_8));
+
+        ProcessMetadata m = new TransformationParser(trans, 0, false).parse();
+
+        ConnectionUsageIndex index = new ConnectionUsageIndex();
+        index.accept(m);
+        // The same process reached again is indexed once
+        index.accept(m);
+
+        List<ConnectionUsageIndex.Usage> usages = index.usagesOf("DWH_PROD");
+        assertEquals(2, usages.size());
+        assertEquals("dwh.local", usages.get(0).getServer());
+        assertEquals(1, index.connectionCount());
+        assertTrue(index.usagesOf("STAGE").isEmpty());
+
+        StringWriter out = new StringWriter();
+        index.export(out);
+        String[] records = out.toString().split("\n");
+        assertEquals(2, records.length);
+        assertTrue(records[0].startsWith("{\"connection\":\"DWH_PROD\",\"server\":\"dwh.local\",\"database\":\"dwh\""));
+        assertTrue(records[0].endsWith("\"item\":\"read\",\"class\":\"TableInput\"}"));
+    }
+}
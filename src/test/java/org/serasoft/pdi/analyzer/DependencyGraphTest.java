@@ -0,0 +1,147 @@
+package org.serasoft.pdi.analyzer;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.JobParser;
+import org.serasoft.pdi.parser.ParserContext;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Class Name   : DependencyGraphTest.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class DependencyGraphTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private DependencyGraph sampleGraph() {
+
+        // main.kjb -> load.kjb -> (extract.ktr, store.ktr); report.kjb -> store.ktr
+        return new DependencyGraph.Builder()
+                .addEdge("/main.kjb", "/load.kjb")
+                .addEdge("/load.kjb", "/extract.ktr")
+                .addEdge("/load.kjb", "/store.ktr")
+                .addEdge("/load.kjb", "/store.ktr")
+                .addEdge("/report.kjb", "/store.ktr")
+                .build();
+    }
+
+    @Test
+    public void testDuplicateLinksAreOneEdge() {
+
+        DependencyGraph graph = sampleGraph();
+
+        assertEquals(5, graph.nodeCount());
+        assertEquals(4, graph.edgeCount());
+        assertEquals(2, graph.callees(graph.idOf("/load.kjb")).length);
+    }
+
+    @Test
+    public void testCallers() {
+
+        DependencyGraph graph = sampleGraph();
+        int[] callers = graph.callers(graph.idOf("/store.ktr"));
+
+        assertEquals(paths(graph, "/load.kjb", "/report.kjb"), paths(graph, callers));
+        assertEquals(0, graph.callersCount(graph.idOf("/main.kjb")));
+    }
+
+    @Test
+    public void testTransitiveCallers() {
+
+        DependencyGraph graph = sampleGraph();
+        int[] impacted = graph.transitiveCallers(graph.idOf("/store.ktr"));
+
+        assertEquals(paths(graph, "/load.kjb", "/report.kjb", "/main.kjb"), paths(graph, impacted));
+    }
+
+    @Test
+    public void testTransitiveCalleesOnCycle() {
+
+        DependencyGraph graph = new DependencyGraph.Builder()
+                .addEdge("/a.kjb", "/b.kjb")
+                .addEdge("/b.kjb", "/a.kjb")
+                .build();
+
+        int[] reached = graph.transitiveCallees(graph.idOf("/a.kjb"));
+        Arrays.sort(reached);
+
+        assertArrayEquals(new int[]{graph.idOf("/a.kjb"), graph.idOf("/b.kjb")}, reached);
+    }
+
+    @Test
+    public void testUnknownProcess() {
+        assertEquals(-1, sampleGraph().idOf("/unknown.ktr"));
+    }
+
+    @Test
+    public void testSourceDirectoryThroughSymlink() throws Exception {
+
+        File real = tmp.newFolder("real");
+        File link = Files.createSymbolicLink(new File(tmp.getRoot(), "link").toPath(), real.toPath()).toFile();
+        Files.write(new File(real, "load.ktr").toPath(),
+                "<transformation><info><name>load</name></info></transformation>".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(real, "main.kjb").toPath(), ("<job><name>main</name><entries>"
+                + "<entry><name>load</name><type>TRANS</type><filename>${Internal.Entry.Current.Directory}/load.ktr</filename></entry>"
+                + "</entries></job>").getBytes(StandardCharsets.UTF_8));
+
+        ProcessMetadata m = new JobParser(new File(link, "main.kjb"), 0, true, new ParserContext()).parse();
+        DependencyGraph graph = new DependencyGraph.Builder().addProcess(m).build();
+
+        // Both ends of the link are named by their canonical path
+        String load = new File(real, "load.ktr").getCanonicalPath();
+        assertEquals(2, graph.nodeCount());
+        assertEquals(1, graph.edgeCount());
+        assertEquals(paths(graph, new File(real, "main.kjb").getCanonicalPath()),
+                paths(graph, graph.transitiveCallers(graph.idOf(load))));
+    }
+
+    private static Set<Integer> paths(DependencyGraph graph, String... procFilenames) {
+        Set<Integer> ids = new HashSet<>();
+        for (String procFilename : procFilenames) {
+            ids.add(graph.idOf(procFilename));
+        }
+        return ids;
+    }
+
+    private static Set<Integer> paths(DependencyGraph graph, int[] ids) {
+        Set<Integer> set = new HashSet<>();
+        for (int id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+}
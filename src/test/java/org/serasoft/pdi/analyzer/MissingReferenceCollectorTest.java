@@ -0,0 +1,98 @@
+package org.serasoft.pdi.analyzer;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.TransformationParser;
+import org.serasoft.pdi.parser.model.MissingReference;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.SortedMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : MissingReferenceCollectorTest.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class MissingReferenceCollectorTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSummaryGroupsCallersByTarget() {
+
+        MissingReferenceCollector collector = new MissingReferenceCollector();
+        collector.add(missingRef("/b.kjb", "run", "/lost.ktr"));
+        collector.add(missingRef("/a.kjb", "run", "/lost.ktr"));
+        collector.add(missingRef("/a.kjb", "run", "/lost.ktr"));
+        collector.add(missingRef("/a.kjb", "other", "/gone.kjb"));
+
+        SortedMap<String, List<MissingReference>> summary = collector.summary();
+
+        assertEquals(2, summary.size());
+        assertEquals("/gone.kjb", summary.firstKey());
+        List<MissingReference> callers = summary.get("/lost.ktr");
+        assertEquals(2, callers.size());
+        assertEquals("/a.kjb", callers.get(0).getReferencingProcFilename());
+        assertEquals("/b.kjb", callers.get(1).getReferencingProcFilename());
+    }
+
+    @Test
+    public void testMappingToMissingFile() throws Exception {
+
+        File trans = tmp.newFile("caller.ktr");
+        Files.write(trans.toPath(), ("<transformation><info><name>caller</name></info>"
+                + "<step><name>sub</name><type>Mapping</type>"
+                + "<filename>${Internal.Entry.Current.Directory}/lost.ktr</filename></step>"
+                + "</transformation>").getBytes(StandardCharsets.UTF_8));
+
+        ProcessMetadata m = new TransformationParser(trans, 0, false).parse();
+
+        MissingReference missingRef = m.getMissingRefs().get(0);
+        assertEquals(MissingReference.TYPE_MAPPING_FILE, missingRef.getType());
+        assertEquals("sub", missingRef.getReferencingStepName());
+        assertEquals(new File(tmp.getRoot(), "lost.ktr").getCanonicalPath(), missingRef.getRefValue());
+        assertNull(m.getItems().get("sub").getLinkedProcess());
+
+        MissingReferenceCollector collector = new MissingReferenceCollector();
+        collector.accept(m);
+        assertTrue(collector.summary().containsKey(missingRef.getRefValue()));
+    }
+
+    private static MissingReference missingRef(String callerProcFilename, String callerStepName, String target) {
+
+        MissingReference missingRef = new MissingReference(callerStepName, null, callerProcFilename);
+        missingRef.setType(MissingReference.TYPE_JOB_FILE);
+        missingRef.setRefValue(target);
+        return missingRef;
+    }
+}
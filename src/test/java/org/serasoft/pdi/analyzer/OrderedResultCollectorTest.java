@@ -0,0 +1,167 @@
+package org.serasoft.pdi.analyzer;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Test;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Class Name   : OrderedResultCollectorTest.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class OrderedResultCollectorTest {
+
+    @Test
+    public void testResultsAreDeliveredInSubmissionOrder() throws Exception {
+
+        int files = 500;
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        OrderedResultCollector collector = new OrderedResultCollector(8, m -> delivered.add(m.getName()));
+
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < files; i++) {
+                long sequence = collector.reserve();
+
+                String name = "file_" + i;
+                // Every tenth file gives no result, as a file that cannot be parsed
+                boolean noResult = i % 10 == 9;
+                workers.execute(() -> {
+                    try {
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    collector.complete(sequence, noResult ? null : metadata(name));
+                });
+            }
+            collector.awaitCompletion();
+        } finally {
+            workers.shutdownNow();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            if (i % 10 != 9)
+                expected.add("file_" + i);
+        }
+        assertEquals(expected, delivered);
+    }
+
+    @Test
+    public void testReserveBlocksWhileTooManyArePending() throws Exception {
+
+        OrderedResultCollector collector = new OrderedResultCollector(1, m -> { });
+        long first = collector.reserve();
+
+        AtomicLong second = new AtomicLong(-1);
+        Thread walker = new Thread(() -> {
+            try {
+                second.set(collector.reserve());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        walker.start();
+
+        // No permit is left until the first result is delivered
+        walker.join(200);
+        assertTrue(walker.isAlive());
+        assertEquals(-1, second.get());
+
+        collector.complete(first, null);
+        walker.join(10000);
+        assertEquals(1, second.get());
+    }
+
+    @Test
+    public void testInterruptedWhileBlocked() throws Exception {
+
+        OrderedResultCollector collector = new OrderedResultCollector(1, m -> { });
+        collector.reserve();
+
+        Thread.currentThread().interrupt();
+        try {
+            collector.reserve();
+            fail("The walk must stop when interrupted while waiting for a permit");
+        } catch (InterruptedException e) {
+            // Expected
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testConsumerFailure() throws Exception {
+
+        IllegalStateException failure = new IllegalStateException("disk full");
+        List<String> delivered = new ArrayList<>();
+        OrderedResultCollector collector = new OrderedResultCollector(5, m -> {
+            if (m.getName().equals("file_1"))
+                throw failure;
+            delivered.add(m.getName());
+        });
+
+        for (int i = 0; i < 5; i++) {
+            collector.reserve();
+        }
+        // The results after the failing one are already queued when it is delivered
+        for (int i = 4; i >= 0; i--) {
+            collector.complete(i, metadata("file_" + i));
+        }
+
+        try {
+            collector.awaitCompletion();
+            fail("The failure of the consumer must be reported");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(Collections.singletonList("file_0"), delivered);
+
+        // Every permit is back, and no more files are taken
+        try {
+            collector.reserve();
+            fail("No file must be submitted once the consumer failed");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    private static ProcessMetadata metadata(String name) {
+        ProcessMetadata m = new ProcessMetadata();
+        m.setName(name);
+        return m;
+    }
+}
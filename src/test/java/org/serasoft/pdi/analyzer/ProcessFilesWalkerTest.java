@@ -0,0 +1,74 @@
+package org.serasoft.pdi.analyzer;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : ProcessFilesWalkerTest.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class ProcessFilesWalkerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testWalksAgreesWithWalk() throws Exception {
+
+        Path base = tmp.getRoot().getCanonicalFile().toPath();
+        tmp.newFile("main.kjb");
+        tmp.newFile("notes.txt");
+        tmp.newFolder("sub");
+        tmp.newFile("sub/load.ktr");
+        tmp.newFolder(".hidden");
+        tmp.newFile(".hidden/old.ktr");
+
+        for (boolean recurse : new boolean[]{false, true}) {
+            ProcessFilesWalker walker = new ProcessFilesWalker(recurse);
+            List<Path> walked = new ArrayList<>();
+            walker.walk(base, f -> walked.add(f.toPath()));
+
+            List<Path> expected = new ArrayList<>();
+            for (String name : new String[]{"main.kjb", "notes.txt", "sub/load.ktr", ".hidden/old.ktr"}) {
+                if (walker.walks(base, base.resolve(name)))
+                    expected.add(base.resolve(name));
+            }
+            assertEquals(expected.size(), walked.size());
+            assertTrue(walked.containsAll(expected));
+        }
+
+        assertFalse(new ProcessFilesWalker(true).walks(base, new File("/elsewhere/main.kjb").toPath()));
+        assertFalse(new ProcessFilesWalker(true).walks(base, base.resolve("missing.kjb")));
+    }
+}
@@ -0,0 +1,80 @@
+package org.serasoft.pdi.analyzer;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.JobParser;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : WatchedProcessesTest.java
+ * Package Name : org.serasoft.pdi.analyzer
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class WatchedProcessesTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testUpdates() throws Exception {
+
+        File job = tmp.newFile("main.kjb");
+        write(job, "<job><name>main</name><entries>"
+                + "<entry><name>load</name><type>TRANS</type><filename>${Internal.Entry.Current.Directory}/load.ktr</filename></entry>"
+                + "</entries></job>");
+        String load = new File(tmp.getRoot().getCanonicalFile(), "load.ktr").getPath();
+
+        WatchedProcesses processes = new WatchedProcesses();
+        WatchedProcesses.Update update = processes.put(new JobParser(job, 0, false).parse());
+
+        assertEquals(1, update.getAddedMissingRefs().size());
+        assertEquals(Collections.singleton(job.getCanonicalPath()), processes.callersOf(load));
+
+        // The job is saved again, now linking to a file that exists
+        write(new File(load), "<transformation><info><name>load</name></info></transformation>");
+        update = processes.put(new JobParser(job, 0, false).parse());
+
+        assertTrue(update.getAddedMissingRefs().isEmpty());
+        assertEquals(1, update.getResolvedMissingRefs().size());
+        assertEquals(load, update.getResolvedMissingRefs().get(0).getRefValue());
+
+        update = processes.remove(job.getCanonicalPath());
+
+        assertTrue(update.isRemoved());
+        assertTrue(processes.callersOf(load).isEmpty());
+        assertEquals(0, processes.size());
+    }
+
+    private static void write(File f, String content) throws Exception {
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,125 @@
+package org.serasoft.pdi.parser;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : DirectoryListingCacheTest.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class DirectoryListingCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testDirectoryIsListedOnce() throws Exception {
+
+        File dir = tmp.getRoot().getCanonicalFile();
+        tmp.newFile("a.ktr");
+
+        DirectoryListingCache listings = new DirectoryListingCache();
+
+        assertTrue(listings.exists(new File(dir, "a.ktr")));
+        assertFalse(listings.exists(new File(dir, "b.ktr")));
+        assertFalse(listings.exists(new File(dir, "missing/c.ktr")));
+        assertEquals(2, listings.getListed());
+    }
+
+    @Test
+    public void testListingFromWalkerIsUsed() throws Exception {
+
+        File dir = tmp.getRoot().getCanonicalFile();
+
+        DirectoryListingCache listings = new DirectoryListingCache();
+        listings.addListing(dir, Collections.singletonList("a.ktr"));
+
+        assertTrue(listings.exists(new File(dir, "a.ktr")));
+        assertEquals(0, listings.getListed());
+    }
+
+    @Test
+    public void testListingIsTrusted() throws Exception {
+
+        File dir = tmp.getRoot().getCanonicalFile();
+        tmp.newFile("b.ktr");
+        tmp.newFile("notes.txt");
+
+        // Listed before b.ktr was created: the file system is not asked again until invalidated
+        DirectoryListingCache listings = new DirectoryListingCache();
+        listings.addListing(dir, Arrays.asList("a.ktr", "notes.txt"));
+
+        assertFalse(listings.exists(new File(dir, "b.ktr")));
+        assertTrue(listings.exists(new File(dir, "notes.txt")));
+
+        listings.invalidate(dir);
+        assertTrue(listings.exists(new File(dir, "b.ktr")));
+    }
+
+    @Test
+    public void testCaseOfTheFileSystem() throws Exception {
+
+        File dir = tmp.getRoot().getCanonicalFile();
+        tmp.newFile("a.ktr");
+
+        DirectoryListingCache listings = new DirectoryListingCache();
+
+        assertEquals(new File(dir, "A.ktr").exists(), listings.exists(new File(dir, "A.ktr")));
+    }
+
+    @Test
+    public void testCaseInsensitiveListing() throws Exception {
+
+        File dir = tmp.getRoot().getCanonicalFile();
+
+        DirectoryListingCache listings = new DirectoryListingCache();
+        listings.addListing(dir, Collections.singletonList("Load.ktr"), true);
+
+        assertTrue(listings.exists(new File(dir, "LOAD.ktr")));
+        assertFalse(listings.exists(new File(dir, "other.ktr")));
+
+        listings.addListing(dir, Collections.singletonList("Load.ktr"), false);
+        assertFalse(listings.exists(new File(dir, "LOAD.ktr")));
+    }
+
+    @Test
+    public void testListingsAreBounded() throws Exception {
+
+        DirectoryListingCache listings = new DirectoryListingCache(2);
+        for (int i = 0; i < 5; i++) {
+            listings.addListing(tmp.newFolder("dir" + i).getCanonicalFile(), Collections.singletonList("a.ktr"));
+        }
+
+        assertEquals(2, listings.size());
+    }
+}
@@ -0,0 +1,98 @@
+package org.serasoft.pdi.parser;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.model.Connection;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Class Name   : KettleEnvironmentTest.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class KettleEnvironmentTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSharedConnectionOfStep() throws Exception {
+
+        File kettleDir = tmp.newFolder(".kettle");
+        write(new File(kettleDir, KettleEnvironment.KETTLE_PROPERTIES), "ETL_HOME=/opt/etl\n");
+        write(new File(kettleDir, KettleEnvironment.SHARED_XML), "<sharedobjects>"
+                + "<slaveserver><name>carte</name></slaveserver>"
+                + "<connection><name>DWH</name><server>dwh.local</server><type>POSTGRESQL</type>"
+                + "<attributes><attribute><code>PORT_NUMBER</code><attribute>5432</attribute></attribute></attributes>"
+                + "</connection></sharedobjects>");
+
+        KettleEnvironment environment = KettleEnvironment.load(tmp.getRoot(), null);
+
+        assertEquals("/opt/etl", environment.getVariables().get("ETL_HOME"));
+        assertEquals("dwh.local", environment.getSharedConnection("DWH").getProperties().get("server"));
+
+        File trans = tmp.newFile("load.ktr");
+        write(trans, "<transformation><info><name>load</name></info>"
+                + "<connection><name>STAGE</name><server>stage.local</server></connection>"
+                + "<step><name>read</name><type>TableInput</type><connection>DWH</connection></step>"
+                + "<step><name>write</name><type>TableOutput</type><connection>STAGE</connection></step>"
+                + "</transformation>");
+
+        ParserContext context = new ParserContext();
+        context.setKettleEnvironment(environment);
+        ProcessMetadata m = new TransformationParser(trans, 0, false, context).parse();
+
+        assertEquals("DWH", m.getItems().get("read").getConnectionName());
+        assertEquals(2, m.getConnections().size());
+        Connection shared = m.getConnections().get(1);
+        assertSame(environment.getSharedConnection("DWH"), shared);
+        assertEquals(new File(kettleDir, KettleEnvironment.SHARED_XML), shared.getPdiProcFile());
+    }
+
+    @Test
+    public void testFingerprintFollowsSharedConnectionSettings() throws Exception {
+
+        File sharedXml = tmp.newFile(KettleEnvironment.SHARED_XML);
+        write(sharedXml, "<sharedobjects><connection><name>DWH</name><server>dwh.local</server></connection></sharedobjects>");
+        String fingerprint = KettleEnvironment.load(null, sharedXml).getFingerprint();
+
+        assertEquals(fingerprint, KettleEnvironment.load(null, sharedXml).getFingerprint());
+
+        // Same connection names, another host
+        write(sharedXml, "<sharedobjects><connection><name>DWH</name><server>dwh2.local</server></connection></sharedobjects>");
+        assertNotEquals(fingerprint, KettleEnvironment.load(null, sharedXml).getFingerprint());
+    }
+
+    private static void write(File f, String content) throws Exception {
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,144 @@
+package org.serasoft.pdi.parser;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : LinkCycleTest.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class LinkCycleTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSelfLink() throws Exception {
+
+        File a = newJob("a", "a");
+        ParserContext context = new ParserContext();
+
+        ProcessMetadata m = new JobParser(a, 0, true, context).parse();
+
+        assertEquals(1, m.getCyclicRefs().size());
+        assertEquals(Arrays.asList(path(a), path(a)), m.getCyclicRefs().get(0).getCycle());
+        assertNull(m.getItems().get("run").getLinkedProcess());
+        assertTrue(m.isCycleCut());
+        assertFalse(m.isTruncated());
+    }
+
+    @Test
+    public void testIndirectCycleIsNotCached() throws Exception {
+
+        File a = newJob("a", "b");
+        File b = newJob("b", "a");
+        File c = newJob("c", "b");
+        ParserContext context = new ParserContext();
+
+        ProcessMetadata ma = new JobParser(a, 0, true, context).parse();
+
+        ProcessMetadata mb = ma.getItems().get("run").getLinkedProcess();
+        assertNotNull(mb);
+        assertEquals(Arrays.asList(path(a), path(b), path(a)), mb.getCyclicRefs().get(0).getCycle());
+        assertTrue(mb.isCycleCut());
+        // The cycle is complete from a, whoever calls it
+        assertNull(ma.getCyclicRefs());
+        assertFalse(ma.isCycleCut());
+        // b seen from a closes the cycle on a: reaching it from c must not reuse it
+        assertEquals(0, context.getParseCache().size());
+
+        ProcessMetadata mc = new JobParser(c, 0, true, context).parse();
+
+        ProcessMetadata mcb = mc.getItems().get("run").getLinkedProcess();
+        ProcessMetadata mcba = mcb.getItems().get("run").getLinkedProcess();
+        assertNull(mcb.getCyclicRefs());
+        assertEquals(Arrays.asList(path(b), path(a), path(b)), mcba.getCyclicRefs().get(0).getCycle());
+        assertFalse(mc.isCycleCut());
+    }
+
+    @Test
+    public void testCycleInsideLinkedProcessIsCached() throws Exception {
+
+        File a = newJob("a", "b");
+        File b = newJob("b", "c");
+        File c = newJob("c", "b");
+        ParserContext context = new ParserContext();
+
+        new JobParser(a, 0, true, context).parse();
+
+        // c closes the cycle on b: b is the same whoever calls it, c is not
+        assertEquals(1, context.getParseCache().size());
+        assertNotNull(context.getParseCache().get(ParseCache.Key.of(b)));
+    }
+
+    @Test
+    public void testMaxDepthTruncation() throws Exception {
+
+        File a = newJob("a", "b");
+        File b = newJob("b", "c");
+        newJob("c", "d");
+        ParserContext context = new ParserContext();
+        context.setMaxDepth(1);
+
+        ProcessMetadata ma = new JobParser(a, 0, true, context).parse();
+
+        ProcessMetadata mb = ma.getItems().get("run").getLinkedProcess();
+        assertNotNull(mb);
+        assertNull(mb.getItems().get("run").getLinkedProcess());
+        assertTrue(mb.isTruncated());
+        assertTrue(ma.isTruncated());
+        assertEquals(0, context.getParseCache().size());
+
+        // From b itself the link to c is within the limit
+        ProcessMetadata mbTop = new JobParser(b, 0, true, context).parse();
+        assertNotNull(mbTop.getItems().get("run").getLinkedProcess());
+    }
+
+    private File newJob(String name, String linkedName) throws Exception {
+
+        File job = new File(tmp.getRoot(), name + ".kjb");
+        Files.write(job.toPath(), ("<job><name>" + name + "</name><entries>"
+                + "<entry><name>run</name><type>JOB</type>"
+                + "<filename>${Internal.Entry.Current.Directory}/" + linkedName + ".kjb</filename></entry>"
+                + "</entries></job>").getBytes(StandardCharsets.UTF_8));
+        return job;
+    }
+
+    private static String path(File f) throws Exception {
+        return f.getCanonicalPath();
+    }
+}
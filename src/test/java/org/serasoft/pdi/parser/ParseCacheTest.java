@@ -0,0 +1,114 @@
+package org.serasoft.pdi.parser;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Test;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Class Name   : ParseCacheTest.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class ParseCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+
+        ParseCache cache = new ParseCache(2);
+        ParseCache.Key a = new ParseCache.Key("/a.ktr", 1, 10);
+        ParseCache.Key b = new ParseCache.Key("/b.ktr", 1, 10);
+        ParseCache.Key c = new ParseCache.Key("/c.ktr", 1, 10);
+
+        ProcessMetadata ma = new ProcessMetadata();
+        cache.put(a, ma);
+        cache.put(b, new ProcessMetadata());
+        cache.get(a);
+        cache.put(c, new ProcessMetadata());
+
+        assertEquals(2, cache.size());
+        assertSame(ma, cache.get(a));
+        assertNull(cache.get(b));
+    }
+
+    @Test
+    public void testChangedFileIsNotAHit() {
+
+        ParseCache cache = new ParseCache(2);
+        cache.put(new ParseCache.Key("/a.ktr", 1, 10), new ProcessMetadata());
+
+        assertNull(cache.get(new ParseCache.Key("/a.ktr", 2, 10)));
+        assertNull(cache.get(new ParseCache.Key("/a.ktr", 1, 11)));
+    }
+
+    @Test
+    public void testOneEntryPerFile() {
+
+        ParseCache cache = new ParseCache(10);
+        cache.put(new ParseCache.Key("/a.ktr", 1, 10), new ProcessMetadata());
+        ProcessMetadata changed = new ProcessMetadata();
+        cache.put(new ParseCache.Key("/a.ktr", 2, 10), changed);
+        cache.put(new ParseCache.Key("/b.ktr", 1, 10), new ProcessMetadata());
+
+        assertEquals(2, cache.size());
+        assertSame(changed, cache.get(new ParseCache.Key("/a.ktr", 2, 10)));
+
+        cache.invalidate("/a.ktr");
+        assertEquals(1, cache.size());
+        assertNull(cache.get(new ParseCache.Key("/a.ktr", 2, 10)));
+    }
+
+    @Test
+    public void testLinkedFileIsParsedOnce() {
+
+        ParseCache cache = new ParseCache(10);
+        AtomicInteger parses = new AtomicInteger();
+        File sample = new File("samples/sample_list_files.ktr");
+
+        ProcessMetadata first = cache.getOrParse(sample, () -> {
+            parses.incrementAndGet();
+            return new ProcessMetadata();
+        });
+        ProcessMetadata second = cache.getOrParse(sample, () -> {
+            parses.incrementAndGet();
+            return new ProcessMetadata();
+        });
+
+        assertEquals(1, parses.get());
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testMissingFileIsNotCached() {
+
+        ParseCache cache = new ParseCache(10);
+        cache.getOrParse(new File("samples/missing.ktr"), ProcessMetadata::new);
+
+        assertEquals(0, cache.size());
+    }
+}
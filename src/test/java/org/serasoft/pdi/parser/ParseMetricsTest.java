@@ -0,0 +1,98 @@
+package org.serasoft.pdi.parser;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.utils.ConcurrentHistogram;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : ParseMetricsTest.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class ParseMetricsTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testHistogramPercentiles() {
+
+        ConcurrentHistogram histogram = new ConcurrentHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertWithin(50000, histogram.valueAtPercentile(50));
+        assertWithin(99000, histogram.valueAtPercentile(99));
+        assertEquals(100000, histogram.valueAtPercentile(100));
+    }
+
+    @Test
+    public void testFileMetrics() throws Exception {
+
+        write(tmp.newFile("load.ktr"), "<transformation><info><name>load</name></info>"
+                + "<connection><name>DWH</name><server>dwh.local</server></connection>"
+                + "<step><name>read</name><type>TableInput</type></step>"
+                + "</transformation>");
+        File job = tmp.newFile("main.kjb");
+        write(job, "<job><name>main</name><entries>"
+                + "<entry><name>load</name><type>TRANS</type><filename>${Internal.Entry.Current.Directory}/load.ktr</filename></entry>"
+                + "</entries></job>");
+
+        ParseMetrics metrics = new ParseMetrics(1);
+        ParserContext context = new ParserContext();
+        context.setMetrics(metrics);
+        new JobParser(job, 0, true, context).parse();
+
+        assertEquals(2, metrics.getFileCount());
+        assertEquals(1, metrics.getSectionTimes(ParseMetrics.Section.STEPS).getCount());
+        assertEquals(1, metrics.getSectionTimes(ParseMetrics.Section.CONNECTIONS).getCount());
+        assertEquals(1, metrics.getSectionTimes(ParseMetrics.Section.ENTRIES).getCount());
+        assertEquals(job.length() + new File(tmp.getRoot(), "load.ktr").length(), metrics.getBytes().getSum());
+        assertTrue(metrics.getEvents().getSum() > 0);
+
+        List<ParseMetrics.FileStats> slowest = metrics.getSlowest();
+        assertEquals(1, slowest.size());
+        assertTrue(slowest.get(0).getOwnNanos() <= slowest.get(0).getWallNanos());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " not within the bucket error of " + expected,
+                Math.abs(actual - expected) <= expected / ConcurrentHistogram.SUB_BUCKETS);
+    }
+
+    private static void write(File f, String content) throws Exception {
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
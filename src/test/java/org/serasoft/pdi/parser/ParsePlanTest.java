@@ -0,0 +1,96 @@
+package org.serasoft.pdi.parser;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Test;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : ParsePlanTest.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class ParsePlanTest {
+
+    @Test
+    public void testChecksSelectSections() {
+
+        ParsePlan plan = ParsePlan.fromChecks(Arrays.asList("parameters", "trans_flag"));
+
+        assertTrue(plan.includes(ParsePlan.Section.PARAMETERS));
+        assertTrue(plan.includes(ParsePlan.Section.TRANS_FLAG));
+        assertFalse(plan.includes(ParsePlan.Section.CONNECTIONS));
+        assertFalse(plan.includes(ParsePlan.Section.ITEMS));
+        assertSame(ParsePlan.ALL, ParsePlan.fromChecks(null));
+    }
+
+    @Test
+    public void testTransFlagPlanReadsOnlyInfo() {
+
+        ParserContext context = new ParserContext();
+        context.setParsePlan(ParsePlan.fromChecks(Arrays.asList("trans_flag")));
+
+        ProcessMetadata m = new TransformationParser(new File("samples/sample_processor.ktr"), 0, false, context).parse();
+
+        assertFalse(m.isTransactional());
+        assertNotNull(m.getName());
+        assertNull(m.getParams());
+        assertNull(m.getConnections());
+        assertNull(m.getItems());
+        assertNull(m.getHops());
+    }
+
+    @Test
+    public void testConnectionPlanSkipsEntries() {
+
+        ParserContext context = new ParserContext();
+        context.setParsePlan(ParsePlan.fromChecks(Arrays.asList("parameters", "connection")));
+
+        ProcessMetadata m = new JobParser(new File("samples/sample.kjb"), 0, false, context).parse();
+
+        assertEquals(1, m.getParams().size());
+        assertNull(m.getItems());
+        assertNull(m.getHops());
+    }
+
+    @Test
+    public void testJobHeaderIsPartial() {
+
+        ProcessMetadata m = new JobParser(new File("samples/sample.kjb"), 0, false).parseHeader();
+
+        assertTrue(m.isPartial());
+        assertNotNull(m.getName());
+        assertEquals(1, m.getParams().size());
+        assertNull(m.getItems());
+
+        assertFalse(new JobParser(new File("samples/sample.kjb"), 0, false).parse().isPartial());
+    }
+}
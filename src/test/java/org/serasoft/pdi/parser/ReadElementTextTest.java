@@ -0,0 +1,120 @@
+package org.serasoft.pdi.parser;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Test;
+import org.serasoft.pdi.parser.utils.MetadataPath;
+import org.serasoft.pdi.parser.utils.XMLInputFactoryHolder;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Class Name   : ReadElementTextTest.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class ReadElementTextTest {
+
+    @Test
+    public void testEntitiesAndCData() throws Exception {
+
+        for (XMLInputFactory factory : factories()) {
+            assertEquals(Arrays.asList("x & y", "", "one <two> three", "ab"), readTexts(factory,
+                    "<r><t>x &amp; y</t><t/><t>one<![CDATA[ <two> ]]>three</t><t>a<!-- note -->b</t></r>"));
+        }
+    }
+
+    @Test
+    public void testLongTextGrowsTheBuffer() throws Exception {
+
+        StringBuilder xml = new StringBuilder("<r><t>");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            xml.append("&lt;").append(i % 10).append("<![CDATA[&]]>");
+            expected.append('<').append(i % 10).append('&');
+        }
+        xml.append("</t><t>short</t></r>");
+
+        for (XMLInputFactory factory : factories()) {
+            // The second text is shorter than what is left in the buffer by the first one
+            assertEquals(Arrays.asList(expected.toString(), "short"), readTexts(factory, xml.toString()));
+        }
+    }
+
+    @Test
+    public void testMetadataPathIsPopped() throws Exception {
+
+        XMLStreamReader reader = XMLInputFactoryHolder.getFactory().createXMLStreamReader(
+                new ByteArrayInputStream("<r><t>text</t></r>".getBytes(StandardCharsets.UTF_8)));
+        MetadataPath path = new MetadataPath("r");
+        reader.nextTag();
+        reader.nextTag();
+        path.push("t");
+
+        assertEquals("text", parser().readElementText(reader, path));
+        assertEquals(1, path.depth());
+    }
+
+    private static List<String> readTexts(XMLInputFactory factory, String xml) throws Exception {
+
+        BasePDIProcessParser parser = parser();
+        XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        MetadataPath path = new MetadataPath();
+
+        List<String> texts = new ArrayList<>();
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamReader.START_ELEMENT && reader.getLocalName().equals("t")) {
+                path.push("t");
+                texts.add(parser.readElementText(reader, path));
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * The parsers' factory, which coalesces text, and one handing text out in
+     * as many events as the reader likes.
+     */
+    private static List<XMLInputFactory> factories() {
+
+        XMLInputFactory splitting = XMLInputFactory.newInstance();
+        splitting.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        splitting.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+
+        List<XMLInputFactory> factories = new ArrayList<>();
+        factories.add(XMLInputFactoryHolder.getFactory());
+        factories.add(splitting);
+        return factories;
+    }
+
+    private static BasePDIProcessParser parser() {
+        return new TransformationParser(new File("unused.ktr"), 0, false);
+    }
+}
@@ -0,0 +1,117 @@
+package org.serasoft.pdi.parser;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.model.ProcessHop;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Class Name   : SkipElementTest.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class SkipElementTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testTransformationSkipsNestedBlocks() throws Exception {
+
+        File trans = write("load.ktr", "<transformation>"
+                + "<info><name>load</name>"
+                + "<log><trans-log-table><field><id>ID_BATCH</id><name>ID_BATCH</name></field></trans-log-table></log>"
+                + "<description>loads the DWH</description></info>"
+                + "<notepads><notepad><note>Not a step</note><name>note</name></notepad></notepads>"
+                + "<step><name>read</name><type>TableInput</type>"
+                + "<fields><field><name>id</name><type>Integer</type></field><field><name>code</name></field></fields>"
+                + "<partitioning><method>none</method><schema_name/></partitioning>"
+                + "<GUI><xloc>100</xloc><yloc>50</yloc><draw>Y</draw></GUI></step>"
+                + "<step><name>write</name><type>TableOutput</type><cluster_schema/><GUI><xloc>200</xloc></GUI></step>"
+                + "<order><hop><from>read</from><to>write</to><enabled>Y</enabled></hop></order>"
+                + "</transformation>");
+
+        ProcessMetadata m = new TransformationParser(trans, 0, false).parse();
+
+        assertEquals("load", m.getName());
+        assertEquals("loads the DWH", m.getDescription());
+        // Names inside fields and notepads are neither steps nor step names
+        assertEquals(new HashSet<>(Arrays.asList("read", "write")), m.getItems().keySet());
+        ProcessItem read = m.getItems().get("read");
+        assertEquals("read", read.getName());
+        assertEquals("TableInput", read.getItemClass());
+        assertEquals("TableOutput", m.getItems().get("write").getItemClass());
+        assertHops(m, "read", "write");
+    }
+
+    @Test
+    public void testJobSkipsNestedBlocks() throws Exception {
+
+        File job = write("main.kjb", "<job><name>main</name><description>nightly</description>"
+                + "<slaveservers><slaveserver><name>remote</name><hostname>etl.local</hostname></slaveserver></slaveservers>"
+                + "<job-log-table><field><name>JOBNAME</name></field></job-log-table>"
+                + "<entries>"
+                + "<entry><name>start</name><type>SPECIAL</type><GUI><xloc>10</xloc></GUI></entry>"
+                + "<entry><name>run</name><type>JOB</type>"
+                + "<arguments><argument><name>ignored</name></argument></arguments>"
+                + "<parameters><pass_all_parameters>Y</pass_all_parameters>"
+                + "<parameter><name>P_DATE</name><stream_name/><value>today</value></parameter></parameters>"
+                + "<xloc>80</xloc></entry>"
+                + "</entries>"
+                + "<hops><hop><from>start</from><to>run</to><enabled>Y</enabled></hop></hops>"
+                + "<notepads><notepad><note>See the wiki</note><name>note</name></notepad></notepads>"
+                + "</job>");
+
+        ProcessMetadata m = new JobParser(job, 0, false).parse();
+
+        assertEquals("main", m.getName());
+        assertEquals("nightly", m.getDescription());
+        assertEquals(new HashSet<>(Arrays.asList("start", "run")), m.getItems().keySet());
+        assertEquals("JOB", m.getItems().get("run").getItemClass());
+        assertHops(m, "start", "run");
+    }
+
+    private static void assertHops(ProcessMetadata m, String from, String to) {
+
+        assertEquals(1, m.getHops().size());
+        ProcessHop hop = m.getHops().get(0);
+        assertEquals(from, hop.getFrom());
+        assertEquals(to, hop.getTo());
+    }
+
+    private File write(String filename, String content) throws Exception {
+        File f = tmp.newFile(filename);
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+}
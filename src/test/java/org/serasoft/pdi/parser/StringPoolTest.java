@@ -0,0 +1,56 @@
+package org.serasoft.pdi.parser;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Class Name   : StringPoolTest.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class StringPoolTest {
+
+    @Test
+    public void testEqualValuesShareAnInstance() {
+
+        StringPool pool = new StringPool(10);
+        String first = pool.intern(new String("TableInput"));
+
+        assertSame(first, pool.intern(new String("TableInput")));
+    }
+
+    @Test
+    public void testFullPoolReturnsValuesAsTheyAre() {
+
+        StringPool pool = new StringPool(1);
+        pool.intern("TableInput");
+        String other = new String("TableOutput");
+
+        assertSame(other, pool.intern(other));
+        assertNotSame(other, pool.intern(new String("TableOutput")));
+        assertEquals(1, pool.size());
+    }
+}
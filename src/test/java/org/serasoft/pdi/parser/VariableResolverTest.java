@@ -0,0 +1,102 @@
+package org.serasoft.pdi.parser;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.utils.VariableScope;
+import org.serasoft.pdi.parser.utils.VariableTemplate;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Class Name   : VariableResolverTest.java
+ * Package Name : org.serasoft.pdi.parser
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class VariableResolverTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testTemplate() {
+
+        VariableScope outer = VariableScope.EMPTY.with(Collections.singletonMap("BASE", "/etl"));
+        VariableScope inner = outer.with(Collections.singletonMap("BASE", "/dev"));
+
+        VariableTemplate template = VariableTemplate.compile("${BASE}/%%SUB%%/load.ktr");
+
+        assertEquals("/etl/%%SUB%%/load.ktr", template.resolve(outer));
+        assertEquals("/dev/%%SUB%%/load.ktr", template.resolve(inner));
+        assertEquals("100% ${} done", VariableTemplate.compile("100% ${} done").resolve(inner));
+        assertFalse(VariableTemplate.compile("/etl/load.ktr").hasVariables());
+    }
+
+    @Test
+    public void testTemplatesAreCompiledOnce() {
+
+        VariableResolver variables = new VariableResolver();
+
+        assertSame(variables.compile("${A}/b.ktr"), variables.compile("${A}/b.ktr"));
+        assertEquals(1, variables.size());
+    }
+
+    @Test
+    public void testScopesOfJob() throws Exception {
+
+        File job = tmp.newFile("main.kjb");
+        Files.write(job.toPath(), ("<job><name>main</name>"
+                + "<parameters><parameter><name>SUB_DIR</name><default_value>sub</default_value></parameter></parameters>"
+                + "<entries>"
+                + "<entry><name>set</name><type>SET_VARIABLES</type><fields><field>"
+                + "<variable_name>LOAD</variable_name><variable_value>load</variable_value><variable_type>JVM</variable_type>"
+                + "</field></fields></entry>"
+                + "<entry><name>run</name><type>TRANS</type>"
+                + "<filename>${Internal.Entry.Current.Directory}/${SUB_DIR}/%%LOAD%%.ktr</filename></entry>"
+                + "<entry><name>other</name><type>JOB</type><filename>${ETL_HOME}/other.kjb</filename></entry>"
+                + "<entry><name>unknown</name><type>JOB</type><filename>${NOT_SET}/../x.kjb</filename></entry>"
+                + "</entries></job>").getBytes(StandardCharsets.UTF_8));
+
+        ParserContext context = new ParserContext();
+        context.setVariables(new VariableResolver(VariableScope.EMPTY.with(Collections.singletonMap("ETL_HOME", "/etl"))));
+
+        ProcessMetadata m = new JobParser(job, 0, false, context).parse();
+
+        File root = tmp.getRoot().getCanonicalFile();
+        assertEquals(new File(root, "sub/load.ktr").getPath(), m.getItems().get("run").getLinkedProcFilename());
+        assertEquals(new File("/etl/other.kjb").getCanonicalPath(), m.getItems().get("other").getLinkedProcFilename());
+        // Not resolved against the working directory
+        assertEquals("${NOT_SET}/../x.kjb", m.getItems().get("unknown").getLinkedProcFilename());
+        assertEquals("load", m.getVars().get(0).getValue());
+        assertNull(m.getItems().get("run").getLinkedProcess());
+    }
+}
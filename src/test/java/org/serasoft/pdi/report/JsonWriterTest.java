@@ -0,0 +1,56 @@
+package org.serasoft.pdi.report;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Class Name   : JsonWriterTest.java
+ * Package Name : org.serasoft.pdi.report
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class JsonWriterTest {
+
+    @Test
+    public void testSeparatorsAndNesting() {
+
+        JsonWriter json = new JsonWriter();
+        json.beginObject()
+                .name("a").value(1)
+                .name("b").beginArray().value("x").value(true).beginObject().endObject().endArray()
+                .member("skipped", null)
+                .name("c").value((String) null)
+                .endObject();
+
+        assertEquals("{\"a\":1,\"b\":[\"x\",true,{}],\"c\":null}", json.toString());
+    }
+
+    @Test
+    public void testStringsAreEscaped() {
+
+        JsonWriter json = new JsonWriter();
+        json.value("say \"hi\"\\\n\t\u0001");
+
+        assertEquals("\"say \\\"hi\\\"\\\\\\n\\t\\u0001\"", json.toString());
+    }
+}
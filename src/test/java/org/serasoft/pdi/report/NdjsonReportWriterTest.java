@@ -0,0 +1,141 @@
+package org.serasoft.pdi.report;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessItemTypeEnum;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.model.ProcessTypeEnum;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : NdjsonReportWriterTest.java
+ * Package Name : org.serasoft.pdi.report
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class NdjsonReportWriterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSharedLinkedProcessIsWrittenOnce() throws Exception {
+
+        ProcessMetadata shared = process("/etl/shared.ktr");
+        ProcessMetadata first = process("/etl/first.kjb", shared);
+        ProcessMetadata second = process("/etl/second.kjb", shared, shared);
+
+        NdjsonReportWriter report = new NdjsonReportWriter(tmp.getRoot());
+        report.accept(first);
+        report.accept(second);
+        // Reported as a link already
+        report.accept(shared);
+        report.close();
+
+        assertEquals(3, lines(report).size());
+        assertTrue(lines(report).get(0).startsWith("{\"type\":\"JOB\",\"filename\":\"/etl/first.kjb\""));
+        assertTrue(lines(report).get(1).contains("\"filename\":\"/etl/shared.ktr\""));
+        assertTrue(lines(report).get(2).contains("\"filename\":\"/etl/second.kjb\""));
+    }
+
+    @Test
+    public void testAnalyzedProcessIsLeftToItsOwnRecord() throws Exception {
+
+        ProcessMetadata shared = process("/etl/shared.ktr");
+        ProcessMetadata outside = process("/lib/outside.ktr");
+        ProcessMetadata main = process("/etl/main.kjb", shared, outside);
+
+        NdjsonReportWriter report = new NdjsonReportWriter(tmp.getRoot());
+        report.setAnalyzed(procFilename -> procFilename.startsWith("/etl/"));
+        report.accept(shared);
+        report.accept(main);
+        report.close();
+
+        List<String> lines = lines(report);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).contains("\"filename\":\"/etl/shared.ktr\""));
+        assertTrue(lines.get(1).contains("\"filename\":\"/etl/main.kjb\""));
+        assertTrue(lines.get(2).contains("\"filename\":\"/lib/outside.ktr\""));
+    }
+
+    @Test
+    public void testFullQueueKeepsEveryRecordInOrder() throws Exception {
+
+        // A single slot: the analysis waits for the writer thread on every record
+        NdjsonReportWriter report = new NdjsonReportWriter(tmp.getRoot(), 1);
+        for (int i = 0; i < 2000; i++) {
+            report.accept(process("/etl/trans_" + i + ".ktr"));
+        }
+        report.close();
+
+        List<String> lines = lines(report);
+        assertEquals(2000, lines.size());
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(lines.get(i).contains("\"filename\":\"/etl/trans_" + i + ".ktr\""));
+        }
+    }
+
+    @Test
+    public void testCloseTwice() throws Exception {
+
+        NdjsonReportWriter report = new NdjsonReportWriter(new File(tmp.getRoot(), "out"));
+        report.accept(process("/etl/main.kjb"));
+        report.close();
+        report.close();
+
+        assertEquals(1, lines(report).size());
+    }
+
+    private static ProcessMetadata process(String procFilename, ProcessMetadata... linked) {
+
+        ProcessMetadata m = new ProcessMetadata();
+        m.setTypeEnum(procFilename.endsWith(".kjb") ? ProcessTypeEnum.JOB : ProcessTypeEnum.TRANSFORMATION);
+        m.setProcFilename(procFilename);
+        m.setName(new File(procFilename).getName());
+
+        Map<String, ProcessItem> items = new LinkedHashMap<>();
+        for (int i = 0; i < linked.length; i++) {
+            ProcessItem item = new ProcessItem(ProcessItemTypeEnum.TASK, "TRANS", "run_" + i);
+            item.setLinkedProcFilename(linked[i].getProcFilename());
+            item.setLinkedProcess(linked[i]);
+            items.put(item.getName(), item);
+        }
+        m.setItems(items);
+
+        return m;
+    }
+
+    private static List<String> lines(NdjsonReportWriter report) throws Exception {
+        return Files.readAllLines(report.getReportFile().toPath(), StandardCharsets.UTF_8);
+    }
+}
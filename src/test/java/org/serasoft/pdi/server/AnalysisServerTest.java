@@ -0,0 +1,105 @@
+package org.serasoft.pdi.server;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.JobParser;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : AnalysisServerTest.java
+ * Package Name : org.serasoft.pdi.server
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class AnalysisServerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testQueries() throws Exception {
+
+        File trans = tmp.newFile("load.ktr");
+        write(trans, "<transformation><info><name>load</name></info>"
+                + "<connection><name>DWH</name><server>dwh.local</server></connection>"
+                + "<step><name>read</name><type>TableInput</type><connection>DWH</connection></step>"
+                + "</transformation>");
+        File job = tmp.newFile("main.kjb");
+        write(job, "<job><name>main</name>"
+                + "<parameters><parameter><name>RUN_DATE</name><default_value>today</default_value></parameter></parameters>"
+                + "<entries>"
+                + "<entry><name>load</name><type>TRANS</type><filename>${Internal.Entry.Current.Directory}/load.ktr</filename></entry>"
+                + "<entry><name>gone</name><type>JOB</type><filename>${Internal.Entry.Current.Directory}/gone.kjb</filename></entry>"
+                + "</entries></job>");
+
+        ProcessMetadata m = new JobParser(job, 0, true).parse();
+        String load = trans.getCanonicalPath();
+
+        try (AnalysisServer server = new AnalysisServer(0, AnalysisState.build(Collections.singletonList(m)))) {
+            server.start();
+
+            assertEquals("{\"processes\":2,\"links\":2,\"connections\":1,\"missingFiles\":1}", get(server, "/status", 200));
+            assertEquals("{\"file\":\"" + load + "\",\"callers\":[\"" + job.getCanonicalPath() + "\"]}",
+                    get(server, "/callers?file=" + URLEncoder.encode(load, "UTF-8"), 200));
+            assertTrue(get(server, "/parameters?file=" + URLEncoder.encode(job.getPath(), "UTF-8"), 200)
+                    .contains("{\"name\":\"RUN_DATE\",\"defaultValue\":\"today\"}"));
+            assertTrue(get(server, "/missing-refs", 200).contains("gone.kjb"));
+            assertTrue(get(server, "/connection-usage?name=DWH", 200).contains("\"item\":\"read\""));
+            get(server, "/callees?file=nowhere.kjb", 404);
+            get(server, "/connection-usage", 400);
+            get(server, "/connection-usage?name=%zz", 400);
+        }
+    }
+
+    private static String get(AnalysisServer server, String path, int expectedStatus) throws Exception {
+
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        assertEquals(expectedStatus, conn.getResponseCode());
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = expectedStatus == 200 ? conn.getInputStream() : conn.getErrorStream()) {
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                body.write(buffer, 0, n);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void write(File f, String content) throws Exception {
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
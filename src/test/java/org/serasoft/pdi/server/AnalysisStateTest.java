@@ -0,0 +1,126 @@
+package org.serasoft.pdi.server;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.analyzer.DependencyGraph;
+import org.serasoft.pdi.parser.JobParser;
+import org.serasoft.pdi.parser.TransformationParser;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class Name   : AnalysisStateTest.java
+ * Package Name : org.serasoft.pdi.server
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class AnalysisStateTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testUpdateMatchesBuild() throws Exception {
+
+        File main = new File(tmp.getRoot(), "main.kjb");
+        File load = new File(tmp.getRoot(), "load.ktr");
+        File side = new File(tmp.getRoot(), "side.kjb");
+        File added = new File(tmp.getRoot(), "new.ktr");
+        write(main, job("main", "load.ktr", "gone.kjb"));
+        write(load, transformation("load", "DWH"));
+        write(side, job("side", "gone.kjb"));
+
+        AnalysisState state = AnalysisState.build(Arrays.asList(parseJob(main), parseTransformation(load), parseJob(side)));
+        assertEquals(Collections.singleton(new File(tmp.getRoot(), "gone.kjb").getPath()), state.getMissingRefs().keySet());
+        assertEquals(2, state.getMissingRefs().values().iterator().next().size());
+
+        // main now runs a new transformation and a missing job, side is deleted
+        write(added, transformation("new", "ODS"));
+        write(main, job("main", "new.ktr", "later.kjb"));
+        assertTrue(side.delete());
+        ProcessMetadata changedMain = parseJob(main);
+
+        AnalysisState updated = state.update(Collections.singletonList(changedMain),
+                Collections.singletonList(side.getCanonicalPath()));
+        AnalysisState built = AnalysisState.build(Arrays.asList(changedMain, parseTransformation(load)));
+
+        assertEquals(built.processCount(), updated.processCount());
+        assertNull(updated.getProcess(side.getCanonicalPath()));
+        assertEquals(built.getMissingRefs().keySet(), updated.getMissingRefs().keySet());
+        assertEquals(built.getGraph().edgeCount(), updated.getGraph().edgeCount());
+        assertEquals(callees(built.getGraph(), main), callees(updated.getGraph(), main));
+        assertEquals(1, updated.getConnectionUsage().usageCount("ODS"));
+        assertEquals(1, updated.getConnectionUsage().usageCount("DWH"));
+    }
+
+    private static List<String> callees(DependencyGraph graph, File procFile) throws Exception {
+
+        List<String> callees = new ArrayList<>();
+        for (int id : graph.callees(graph.idOf(procFile.getCanonicalPath()))) {
+            callees.add(graph.procFilenameOf(id));
+        }
+        Collections.sort(callees);
+        return callees;
+    }
+
+    private static ProcessMetadata parseJob(File f) {
+        return new JobParser(f, 0, true).parse();
+    }
+
+    private static ProcessMetadata parseTransformation(File f) {
+        return new TransformationParser(f, 0, true).parse();
+    }
+
+    private static String job(String name, String... linked) {
+
+        StringBuilder job = new StringBuilder("<job><name>" + name + "</name><entries>");
+        for (String filename : linked) {
+            job.append("<entry><name>run ").append(filename).append("</name><type>")
+                    .append(filename.endsWith(".ktr") ? "TRANS" : "JOB").append("</type>")
+                    .append("<filename>${Internal.Entry.Current.Directory}/").append(filename).append("</filename></entry>");
+        }
+        return job.append("</entries></job>").toString();
+    }
+
+    private static String transformation(String name, String connection) {
+        return "<transformation><info><name>" + name + "</name></info>"
+                + "<connection><name>" + connection + "</name><server>db.local</server></connection>"
+                + "<step><name>read</name><type>TableInput</type><connection>" + connection + "</connection></step>"
+                + "</transformation>";
+    }
+
+    private static void write(File f, String content) throws Exception {
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,158 @@
+package org.serasoft.pdi.snapshot;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Test;
+import org.serasoft.pdi.parser.JobParser;
+import org.serasoft.pdi.parser.model.Connection;
+import org.serasoft.pdi.parser.model.ProcessItem;
+import org.serasoft.pdi.parser.model.ProcessMetadata;
+import org.serasoft.pdi.parser.model.ProcessTypeEnum;
+import org.serasoft.pdi.parser.utils.ConnectionFingerprint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Class Name   : SnapshotTest.java
+ * Package Name : org.serasoft.pdi.snapshot
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class SnapshotTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+
+        ProcessMetadata job = new JobParser(new File("samples/sample.kjb"), 0, true).parse();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SnapshotWriter writer = new SnapshotWriter(bytes)) {
+            writer.write(job);
+            // Written again, it is only referenced
+            writer.write(job);
+        }
+
+        List<ProcessMetadata> roots = new SnapshotReader(new ByteArrayInputStream(bytes.toByteArray())).read();
+
+        assertEquals(2, roots.size());
+        assertSame(roots.get(0), roots.get(1));
+
+        ProcessMetadata read = roots.get(0);
+        assertEquals(job.getName(), read.getName());
+        assertEquals(job.getProcFilename(), read.getProcFilename());
+        assertEquals(job.getParams().keySet(), read.getParams().keySet());
+        assertEquals(job.getHops().size(), read.getHops().size());
+        assertEquals(job.getItems().keySet(), read.getItems().keySet());
+
+        for (ProcessItem item : job.getItems().values()) {
+            ProcessItem readItem = read.getItems().get(item.getName());
+            assertEquals(item.getItemClass(), readItem.getItemClass());
+            assertEquals(item.getLinkedProcFilename(), readItem.getLinkedProcFilename());
+            if (item.getLinkedProcess() != null) {
+                assertNotNull(readItem.getLinkedProcess());
+                assertEquals(item.getLinkedProcess().getConnections().size(),
+                        readItem.getLinkedProcess().getConnections().size());
+            }
+        }
+    }
+
+    @Test
+    public void testFlagsAndConnectionsRoundTrip() throws IOException {
+
+        Connection conn = new Connection("DWH", null);
+        HashMap<String, String> properties = new HashMap<>();
+        properties.put("server", "dwh.local");
+        properties.put("password", "Encrypted 2be98afc86aa7f2e4cb79ce10be9fc");
+        conn.setProperties(properties);
+        conn.setFingerprint(ConnectionFingerprint.of(conn));
+
+        ProcessMetadata job = new ProcessMetadata();
+        job.setTypeEnum(ProcessTypeEnum.JOB);
+        job.setProcFilename("/etl/main.kjb");
+        job.setCycleCut(true);
+        job.setConnections(Collections.singletonList(conn));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SnapshotWriter writer = new SnapshotWriter(bytes)) {
+            writer.write(job);
+        }
+
+        ProcessMetadata read = new SnapshotReader(new ByteArrayInputStream(bytes.toByteArray())).read().get(0);
+        Connection readConn = read.getConnections().get(0);
+
+        assertTrue(read.isCycleCut());
+        assertEquals("dwh.local", readConn.getProperties().get("server"));
+        assertEquals("********", readConn.getProperties().get("password"));
+        // The fingerprint still tells copies with other passwords apart
+        assertEquals(conn.getFingerprint(), readConn.getFingerprint());
+        assertFalse(new String(bytes.toByteArray(), "ISO-8859-1").contains("2be98afc86aa7f2e4cb79ce10be9fc"));
+    }
+
+    @Test
+    public void testWriteFailureIsThrownByClose() throws IOException {
+
+        IOException diskFull = new IOException("No space left on device");
+        OutputStream full = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw diskFull;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw diskFull;
+            }
+        };
+
+        ProcessMetadata large = new ProcessMetadata();
+        // Larger than the buffer of the writer, so that accept reaches the stream
+        large.setDescription(new String(new char[256 * 1024]).replace('\0', 'x'));
+
+        SnapshotWriter writer = new SnapshotWriter(full);
+        writer.accept(large);
+        writer.accept(large);
+
+        try {
+            writer.close();
+            fail("The write failure must be reported");
+        } catch (IOException e) {
+            assertSame(diskFull, e);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        new SnapshotReader(new ByteArrayInputStream("<job/>".getBytes())).read();
+    }
+}
@@ -21,6 +21,8 @@ import org.serasoft.pdi.parser.utils.MetadataPath;
 
 import static junit.framework.TestCase.assertNotNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Class Name   : PDIMetadataPathTest.java
@@ -105,4 +107,49 @@ public class MetadataPathTest {
 
     }
 
+    @Test
+    public void testMatches() {
+
+        MetadataPath.Pattern entries = MetadataPath.compile("/job/entries");
+        MetadataPath metadataPath = new MetadataPath("job");
+
+        assertFalse(metadataPath.matches(entries));
+
+        metadataPath.push("entries");
+        assertTrue(metadataPath.matches(entries));
+
+        metadataPath.push("entry");
+        assertFalse(metadataPath.matches(entries));
+
+        metadataPath.pop();
+        assertTrue(metadataPath.matches(entries));
+    }
+
+    @Test
+    public void testMatchesComparesEveryElement() {
+
+        MetadataPath metadataPath = new MetadataPath("transformation");
+        metadataPath.push("info");
+        metadataPath.push(new String("name"));
+
+        assertTrue(metadataPath.matches(MetadataPath.compile("/transformation/info/name")));
+        assertFalse(metadataPath.matches(MetadataPath.compile("/transformation/step/name")));
+        assertFalse(metadataPath.matches(MetadataPath.compile("/job/info/name")));
+    }
+
+    @Test
+    public void testPathBeyondInitialCapacity() {
+
+        MetadataPath metadataPath = new MetadataPath("root");
+        StringBuilder expected = new StringBuilder("/root");
+        for (int i = 0; i < 40; i++) {
+            metadataPath.push("e" + i);
+            expected.append("/e").append(i);
+        }
+
+        assertEquals(41, metadataPath.depth());
+        assertEquals(expected.toString(), metadataPath.path());
+        assertTrue(metadataPath.matches(MetadataPath.compile(expected.toString())));
+    }
+
 }
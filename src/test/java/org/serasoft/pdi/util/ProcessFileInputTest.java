@@ -0,0 +1,86 @@
+package serasoft.pdi.util;
+
+/**
+ *  Copyright 2016 - Sergio Ramazzina : sergio.ramazzina@serasoft.it
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.serasoft.pdi.parser.utils.ProcessFileInput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Class Name   : ProcessFileInputTest.java
+ * Package Name : serasoft.pdi.util
+ * <p>
+ * Created By   : Sergio Ramazzina - sergio.ramazzina@serasoft.it
+ * Creation Date: 18/10/26
+ * Description  :
+ */
+
+public class ProcessFileInputTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testEncodingIsSniffedWithoutConsumingTheFile() throws Exception {
+
+        String content = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><transformation/>";
+        File f = tmp.newFile("latin.ktr");
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+
+        try (ProcessFileInput in = ProcessFileInput.open(f)) {
+            assertEquals("ISO-8859-1", in.getEncoding());
+            assertEquals(f.length(), in.length());
+
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            for (int b; (b = in.read()) >= 0; ) {
+                read.write(b);
+            }
+            assertEquals(content, new String(read.toByteArray(), StandardCharsets.ISO_8859_1));
+            assertEquals(f.length(), in.getBytesRead());
+        }
+    }
+
+    @Test
+    public void testOnlyTheBytesReadAreCounted() throws Exception {
+
+        File f = tmp.newFile("load.ktr");
+        byte[] content = new byte[64 * 1024];
+        Files.write(f.toPath(), content);
+
+        try (ProcessFileInput in = ProcessFileInput.open(f)) {
+            assertEquals(0, in.getBytesRead());
+            assertEquals(10, in.read(new byte[10]));
+            in.read();
+            assertEquals(5, in.skip(5));
+            assertEquals(16, in.getBytesRead());
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testMissingFile() throws Exception {
+        ProcessFileInput.open(new File(tmp.getRoot(), "missing.ktr"));
+    }
+}